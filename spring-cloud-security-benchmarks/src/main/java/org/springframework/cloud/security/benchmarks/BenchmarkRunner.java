@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks (all of them, or the ones matching the regular expression given as
+ * the first argument) at 1, 8 and 64 threads with the GC profiler, so that allocation
+ * rates are reported next to the timings. Results for each thread count are written to
+ * <code>jmh-result-&lt;threads&gt;.json</code>.
+ */
+public final class BenchmarkRunner {
+
+	private static final int[] THREADS = { 1, 8, 64 };
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : "org.springframework.cloud.security.*";
+		for (int threads : THREADS) {
+			Options options = new OptionsBuilder().include(include).threads(threads).addProfiler(GCProfiler.class)
+					.resultFormat(ResultFormatType.JSON).result("jmh-result-" + threads + ".json").build();
+			new Runner(options).run();
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.security.oauth2.client.ResourceServerTokenRelayAutoConfiguration.ResourceServerTokenRelayRegistrationAutoConfiguration;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.provider.authentication.OAuth2AuthenticationDetails;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+
+/**
+ * Measures the resource server token relay: {@link AccessTokenContextRelay#copyToken()}
+ * when it copies a token and when the context already has one, and the MVC interceptor
+ * registered by {@link ResourceServerTokenRelayRegistrationAutoConfiguration} for a
+ * request that needs the relay.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("deprecation")
+public class TokenRelayBenchmark {
+
+	private static final String TOKEN = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.e30.signature";
+
+	@State(Scope.Thread)
+	public static class PerThread {
+
+		DefaultOAuth2ClientContext context;
+
+		AccessTokenContextRelay relay;
+
+		HandlerInterceptor interceptor;
+
+		MockHttpServletRequest request;
+
+		MockHttpServletResponse response;
+
+		@Setup
+		public void setup() {
+			request = new MockHttpServletRequest("GET", "/api/resource");
+			request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_VALUE, TOKEN);
+			request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_TYPE, "Bearer");
+			response = new MockHttpServletResponse();
+			TestingAuthenticationToken authentication = new TestingAuthenticationToken("user", TOKEN);
+			authentication.setDetails(new OAuth2AuthenticationDetails(request));
+			// The security context is thread local, and so is this state
+			SecurityContextHolder.getContext().setAuthentication(authentication);
+			context = new DefaultOAuth2ClientContext();
+			relay = new AccessTokenContextRelay(context);
+			ResourceServerTokenRelayRegistrationAutoConfiguration configuration;
+			configuration = new ResourceServerTokenRelayRegistrationAutoConfiguration();
+			configuration.accessTokenContextRelay = relay;
+			configuration.tokenRelayProperties = new TokenRelayProperties();
+			configuration.beanFactory = new DefaultListableBeanFactory();
+			CapturingInterceptorRegistry registry = new CapturingInterceptorRegistry();
+			configuration.addInterceptors(registry);
+			// Path matching happens when the handler chain is built, not per interceptor call
+			interceptor = ((MappedInterceptor) registry.interceptors().get(0)).getInterceptor();
+		}
+
+		@TearDown
+		public void tearDown() {
+			SecurityContextHolder.clearContext();
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class WithToken {
+
+		@Setup(Level.Iteration)
+		public void setup(PerThread state) {
+			state.relay.copyToken();
+		}
+
+	}
+
+	@Benchmark
+	public boolean copyToken(PerThread state) {
+		state.context.setAccessToken(null);
+		return state.relay.copyToken();
+	}
+
+	@Benchmark
+	public boolean skipCopyToken(PerThread state, WithToken withToken) {
+		return state.relay.copyToken();
+	}
+
+	@Benchmark
+	public boolean interceptor(PerThread state) throws Exception {
+		state.context.setAccessToken(null);
+		return state.interceptor.preHandle(state.request, state.response, this);
+	}
+
+	static class CapturingInterceptorRegistry extends InterceptorRegistry {
+
+		List<Object> interceptors() {
+			return getInterceptors();
+		}
+
+	}
+
+}
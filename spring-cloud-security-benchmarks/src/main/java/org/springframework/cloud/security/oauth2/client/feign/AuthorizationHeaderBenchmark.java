@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.feign;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.resource.BaseOAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+/**
+ * Compares rendering the Authorization header on every request (as the interceptor used
+ * to) with reusing the value rendered for the current token.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings("deprecation")
+public class AuthorizationHeaderBenchmark {
+
+	private OAuth2FeignRequestInterceptor cached;
+
+	private OAuth2FeignRequestInterceptor formatted;
+
+	@Setup
+	public void setup() {
+		DefaultOAuth2ClientContext context = new DefaultOAuth2ClientContext();
+		context.setAccessToken(new DefaultOAuth2AccessToken("eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.e30.signature"));
+		cached = new OAuth2FeignRequestInterceptor(context, new BaseOAuth2ProtectedResourceDetails());
+		formatted = new OAuth2FeignRequestInterceptor(context, new BaseOAuth2ProtectedResourceDetails()) {
+			@Override
+			protected String extract(String tokenType) {
+				return String.format("%s %s", tokenType, getToken().getValue());
+			}
+		};
+	}
+
+	@Benchmark
+	public String formatted() {
+		return formatted.extract(OAuth2FeignRequestInterceptor.BEARER);
+	}
+
+	@Benchmark
+	public String cached() {
+		return cached.extract(OAuth2FeignRequestInterceptor.BEARER);
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.feign;
+
+import java.util.concurrent.TimeUnit;
+
+import feign.Request.HttpMethod;
+import feign.RequestTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.cloud.security.oauth2.client.token.InMemoryAccessTokenCache;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+/**
+ * Measures {@link OAuth2FeignRequestInterceptor#apply(RequestTemplate)} when the token
+ * is already in the client context (the steady state), and when every call starts with
+ * an empty context (e.g. a request scoped context) and finds the token in the shared
+ * cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("deprecation")
+public class OAuth2FeignRequestInterceptorBenchmark {
+
+	private static final String TOKEN = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.e30.signature";
+
+	@State(Scope.Benchmark)
+	public static class Shared {
+
+		ClientCredentialsResourceDetails resource;
+
+		InMemoryAccessTokenCache cache;
+
+		@Setup
+		public void setup() {
+			resource = new ClientCredentialsResourceDetails();
+			resource.setClientId("client");
+			resource.setAccessTokenUri("https://example.com/token");
+			cache = new InMemoryAccessTokenCache();
+			cache.put(resource, new DefaultOAuth2AccessToken(TOKEN));
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class PerThread {
+
+		DefaultOAuth2ClientContext context;
+
+		OAuth2FeignRequestInterceptor interceptor;
+
+		RequestTemplate template;
+
+		@Setup
+		public void setup(Shared shared) {
+			context = new DefaultOAuth2ClientContext();
+			interceptor = new OAuth2FeignRequestInterceptor(context, shared.resource);
+			interceptor.setAccessTokenCache(shared.cache);
+			template = new RequestTemplate().method(HttpMethod.GET);
+		}
+
+	}
+
+	@Benchmark
+	public RequestTemplate tokenInContext(PerThread state) {
+		if (state.context.getAccessToken() == null) {
+			state.context.setAccessToken(new DefaultOAuth2AccessToken(TOKEN));
+		}
+		state.interceptor.apply(state.template);
+		return state.template;
+	}
+
+	@Benchmark
+	public RequestTemplate tokenInSharedCache(PerThread state) {
+		state.context.setAccessToken(null);
+		state.interceptor.apply(state.template);
+		return state.template;
+	}
+
+}
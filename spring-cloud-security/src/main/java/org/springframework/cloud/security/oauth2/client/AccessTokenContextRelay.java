@@ -16,12 +16,14 @@
 
 package org.springframework.cloud.security.oauth2.client;
 
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.OAuth2ClientContext;
 import org.springframework.security.oauth2.client.OAuth2RestTemplate;
 import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.security.oauth2.provider.authentication.OAuth2AuthenticationDetails;
 
 /**
@@ -41,33 +43,105 @@ public class AccessTokenContextRelay {
 
 	private OAuth2ClientContext context;
 
+	private OAuth2ClientMetrics metrics = OAuth2ClientMetrics.NONE;
+
+	private TokenExchanger tokenExchanger;
+
 	public AccessTokenContextRelay(OAuth2ClientContext context) {
 		this.context = context;
 	}
 
+	/**
+	 * Record whether tokens are copied or not.
+	 * @param metrics the metrics to record to
+	 */
+	public void setMetrics(OAuth2ClientMetrics metrics) {
+		this.metrics = metrics != null ? metrics : OAuth2ClientMetrics.NONE;
+	}
+
+	/**
+	 * Relay a token exchanged for the incoming one instead of the incoming one itself.
+	 * @param tokenExchanger the exchanger to use, or null to relay the incoming token
+	 */
+	public void setTokenExchanger(TokenExchanger tokenExchanger) {
+		this.tokenExchanger = tokenExchanger;
+	}
+
 	/**
 	 * Attempt to copy an access token from the security context into the oauth2 context.
 	 * @return true if the token was copied
 	 */
 	public boolean copyToken() {
 		if (context.getAccessToken() == null) {
-			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-			if (authentication != null) {
-				Object details = authentication.getDetails();
-				if (details instanceof OAuth2AuthenticationDetails) {
-					OAuth2AuthenticationDetails holder = (OAuth2AuthenticationDetails) details;
-					String token = holder.getTokenValue();
-					DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken(token);
-					String tokenType = holder.getTokenType();
-					if (tokenType != null) {
-						accessToken.setTokenType(tokenType);
-					}
-					context.setAccessToken(accessToken);
-					return true;
-				}
+			OAuth2AccessToken accessToken = getTokenToRelay();
+			if (accessToken != null) {
+				context.setAccessToken(accessToken);
+				metrics.relay(true);
+				return true;
 			}
 		}
+		metrics.relay(false);
 		return false;
 	}
 
+	/**
+	 * Copy the token to relay into the oauth2 context, without checking it for an
+	 * existing token first. Only a relayed token is recorded, so callers can try on
+	 * every read without skewing the metrics.
+	 * @return true if a token was copied
+	 */
+	boolean relayToken() {
+		OAuth2AccessToken accessToken = getTokenToRelay();
+		if (accessToken == null) {
+			return false;
+		}
+		context.setAccessToken(accessToken);
+		recordRelay();
+		return true;
+	}
+
+	/**
+	 * Record a token relayed somewhere other than the oauth2 context.
+	 */
+	void recordRelay() {
+		metrics.relay(true);
+	}
+
+	/**
+	 * The token to relay for the current request: the one that authenticated it, or the
+	 * one it was exchanged for if there is a {@link TokenExchanger}.
+	 * @return the token or null if the current request was not authenticated with one
+	 */
+	OAuth2AccessToken getTokenToRelay() {
+		OAuth2AccessToken accessToken = getRelayedToken();
+		if (accessToken != null && tokenExchanger != null) {
+			return tokenExchanger.exchange(accessToken);
+		}
+		return accessToken;
+	}
+
+	/**
+	 * The access token that authenticated the current request, as found in the
+	 * {@link SecurityContext}.
+	 * @return the access token or null if the current request was not authenticated with
+	 * one
+	 */
+	protected OAuth2AccessToken getRelayedToken() {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication != null) {
+			Object details = authentication.getDetails();
+			if (details instanceof OAuth2AuthenticationDetails) {
+				OAuth2AuthenticationDetails holder = (OAuth2AuthenticationDetails) details;
+				String token = holder.getTokenValue();
+				DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken(token);
+				String tokenType = holder.getTokenType();
+				if (tokenType != null) {
+					accessToken.setTokenType(tokenType);
+				}
+				return accessToken;
+			}
+		}
+		return null;
+	}
+
 }
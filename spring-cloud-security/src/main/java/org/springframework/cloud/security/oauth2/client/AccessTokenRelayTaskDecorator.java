@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.AbstractRequestAttributes;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * A {@link TaskDecorator} that carries the {@link SecurityContext} of the submitting
+ * thread over to the thread that runs the task, so clients called from
+ * <code>@Async</code> methods or <code>CompletableFuture</code> stages relay the same
+ * token as they would on the request thread.
+ * <p>
+ * Tasks may outlive the request that submitted them, so they do not share its request
+ * attributes. A task submitted during a request runs in a request scope of its own
+ * instead, where request and session scoped {@link OAuth2ClientContext} proxies resolve
+ * to a fresh context. Contexts that relay lazily take the token from the security context
+ * again. With the eager relay, pass the client context to the decorator, so that the
+ * token in it is captured when the task is submitted and copied into the context of the
+ * task.
+ */
+@Deprecated
+public class AccessTokenRelayTaskDecorator implements TaskDecorator {
+
+	private final OAuth2ClientContext clientContext;
+
+	public AccessTokenRelayTaskDecorator() {
+		this(null);
+	}
+
+	/**
+	 * @param clientContext the client context of the application, usually a request or
+	 * session scoped proxy, to capture the token from, or null if the client context
+	 * relays the token from the security context itself
+	 */
+	public AccessTokenRelayTaskDecorator(OAuth2ClientContext clientContext) {
+		this.clientContext = clientContext;
+	}
+
+	@Override
+	public Runnable decorate(Runnable runnable) {
+		SecurityContext securityContext = SecurityContextHolder.getContext();
+		boolean inRequest = RequestContextHolder.getRequestAttributes() != null;
+		OAuth2AccessToken accessToken = inRequest && this.clientContext != null ? this.clientContext.getAccessToken()
+				: null;
+		return () -> {
+			SecurityContext originalSecurityContext = SecurityContextHolder.getContext();
+			RequestAttributes originalRequestAttributes = RequestContextHolder.getRequestAttributes();
+			TaskRequestAttributes taskRequestAttributes = inRequest ? new TaskRequestAttributes() : null;
+			SecurityContextHolder.setContext(securityContext);
+			RequestContextHolder.setRequestAttributes(taskRequestAttributes);
+			try {
+				if (accessToken != null) {
+					this.clientContext.setAccessToken(accessToken);
+				}
+				runnable.run();
+			}
+			finally {
+				if (taskRequestAttributes != null) {
+					taskRequestAttributes.requestCompleted();
+				}
+				if (SecurityContextHolder.createEmptyContext().equals(originalSecurityContext)) {
+					SecurityContextHolder.clearContext();
+				}
+				else {
+					SecurityContextHolder.setContext(originalSecurityContext);
+				}
+				RequestContextHolder.setRequestAttributes(originalRequestAttributes);
+			}
+		};
+	}
+
+	/**
+	 * Wrap an executor, e.g. a thread pool or a thread-per-task executor, so that the
+	 * tasks it runs are decorated.
+	 * @param executor the executor to wrap
+	 * @return an executor that relays the token of the submitting thread
+	 */
+	public Executor decorate(Executor executor) {
+		Assert.notNull(executor, "Executor must not be null");
+		return (task) -> executor.execute(decorate(task));
+	}
+
+	/**
+	 * The request (and session) scope of a single task.
+	 */
+	private static final class TaskRequestAttributes extends AbstractRequestAttributes {
+
+		private final Map<String, Object> attributes = new HashMap<>();
+
+		private final Map<String, Object> sessionAttributes = new HashMap<>();
+
+		@Override
+		public Object getAttribute(String name, int scope) {
+			return attributes(scope).get(name);
+		}
+
+		@Override
+		public void setAttribute(String name, Object value, int scope) {
+			attributes(scope).put(name, value);
+		}
+
+		@Override
+		public void removeAttribute(String name, int scope) {
+			attributes(scope).remove(name);
+			removeRequestDestructionCallback(name);
+		}
+
+		@Override
+		public String[] getAttributeNames(int scope) {
+			return StringUtils.toStringArray(attributes(scope).keySet());
+		}
+
+		@Override
+		public void registerDestructionCallback(String name, Runnable callback, int scope) {
+			registerRequestDestructionCallback(name, callback);
+		}
+
+		@Override
+		public Object resolveReference(String key) {
+			return null;
+		}
+
+		@Override
+		public String getSessionId() {
+			return "task-" + Integer.toHexString(System.identityHashCode(this));
+		}
+
+		@Override
+		public Object getSessionMutex() {
+			return this;
+		}
+
+		@Override
+		protected void updateAccessedSessionAttributes() {
+		}
+
+		private Map<String, Object> attributes(int scope) {
+			return scope == SCOPE_REQUEST ? this.attributes : this.sessionAttributes;
+		}
+
+	}
+
+}
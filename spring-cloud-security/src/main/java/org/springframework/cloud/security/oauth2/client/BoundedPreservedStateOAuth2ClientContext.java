@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.token.AccessTokenRequest;
+import org.springframework.util.Assert;
+
+/**
+ * {@link DefaultOAuth2ClientContext} that bounds the state preserved for redirects to the
+ * authorization server. State is only removed when the user comes back with the same
+ * state key, so redirects that are never completed (bots, retries, closed tabs) would
+ * otherwise pile up in the (usually session scoped) context for as long as it lives.
+ * State older than the time to live is dropped, and once there are max entries the
+ * oldest state is dropped to make room.
+ */
+@Deprecated
+public class BoundedPreservedStateOAuth2ClientContext extends DefaultOAuth2ClientContext {
+
+	private static final long serialVersionUID = 1L;
+
+	// Ordered by when the state was stored, since a key stored again moves to the end
+	private final LinkedHashMap<String, PreservedState> preservedState = new LinkedHashMap<>();
+
+	private final int maxEntries;
+
+	private final long timeToLive;
+
+	public BoundedPreservedStateOAuth2ClientContext(AccessTokenRequest accessTokenRequest, int maxEntries,
+			Duration timeToLive) {
+		super(accessTokenRequest);
+		Assert.isTrue(maxEntries > 0, "maxEntries must be positive");
+		Assert.notNull(timeToLive, "timeToLive must not be null");
+		this.maxEntries = maxEntries;
+		this.timeToLive = timeToLive.toMillis();
+	}
+
+	@Override
+	public synchronized void setPreservedState(String stateKey, Object preservedState) {
+		long now = System.currentTimeMillis();
+		removeExpired(now);
+		this.preservedState.remove(stateKey);
+		this.preservedState.put(stateKey, new PreservedState(preservedState, now));
+		Iterator<PreservedState> oldest = this.preservedState.values().iterator();
+		while (this.preservedState.size() > maxEntries) {
+			oldest.next();
+			oldest.remove();
+		}
+	}
+
+	@Override
+	public synchronized Object removePreservedState(String stateKey) {
+		removeExpired(System.currentTimeMillis());
+		PreservedState state = this.preservedState.remove(stateKey);
+		return state != null ? state.value : null;
+	}
+
+	/**
+	 * @return the number of redirects state is currently preserved for
+	 */
+	public synchronized int getPreservedStateCount() {
+		return preservedState.size();
+	}
+
+	private void removeExpired(long now) {
+		Iterator<PreservedState> oldest = preservedState.values().iterator();
+		while (oldest.hasNext() && now - oldest.next().storedAt >= timeToLive) {
+			oldest.remove();
+		}
+	}
+
+	private static final class PreservedState implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Object value;
+
+		// Wall clock time, so that it still means something if the session moves
+		private final long storedAt;
+
+		PreservedState(Object value, long storedAt) {
+			this.value = value;
+			this.storedAt = storedAt;
+		}
+
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.aop.scope.ScopedObject;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+
+/**
+ * Replaces {@link DefaultOAuth2ClientContext} beans (usually the targets of the session
+ * scoped context, so one per session) with a
+ * {@link BoundedPreservedStateOAuth2ClientContext} that keeps their access token request
+ * and access token. Scoped proxies are left alone, since the targets behind them are
+ * replaced instead.
+ */
+@Deprecated
+public class BoundedPreservedStateOAuth2ClientContextPostProcessor implements BeanPostProcessor {
+
+	private static final Log LOG = LogFactory.getLog(BoundedPreservedStateOAuth2ClientContextPostProcessor.class);
+
+	private final ObjectProvider<PreservedStateProperties> properties;
+
+	public BoundedPreservedStateOAuth2ClientContextPostProcessor(ObjectProvider<PreservedStateProperties> properties) {
+		this.properties = properties;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof DefaultOAuth2ClientContext && !(bean instanceof BoundedPreservedStateOAuth2ClientContext)
+				&& !(bean instanceof ScopedObject)) {
+			DefaultOAuth2ClientContext context = (DefaultOAuth2ClientContext) bean;
+			PreservedStateProperties preservedState = this.properties.getObject();
+			BoundedPreservedStateOAuth2ClientContext bounded = new BoundedPreservedStateOAuth2ClientContext(
+					context.getAccessTokenRequest(), preservedState.getMaxEntries(), preservedState.getTimeToLive());
+			if (context.getAccessToken() != null) {
+				bounded.setAccessToken(context.getAccessToken());
+			}
+			// Debug only: there is usually one of these per session
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Bounding the preserved state of " + context.getClass().getName() + " '" + beanName
+						+ "' to " + preservedState.getMaxEntries() + " entries of at most "
+						+ preservedState.getTimeToLive());
+			}
+			return bounded;
+		}
+		return bean;
+	}
+
+}
@@ -19,17 +19,26 @@ package org.springframework.cloud.security.oauth2.client;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.security.oauth2.OAuth2AutoConfiguration;
 import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoRestTemplateCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalancerInterceptor;
 import org.springframework.cloud.client.loadbalancer.RetryLoadBalancerInterceptor;
+import org.springframework.cloud.security.oauth2.client.hedging.HedgingClientHttpRequestInterceptor;
+import org.springframework.cloud.security.oauth2.client.hedging.HedgingProperties;
+import org.springframework.cloud.security.oauth2.client.hedging.RetryBudget;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.security.oauth2.client.OAuth2RestTemplate;
 
 /**
@@ -45,6 +54,8 @@ public class OAuth2LoadBalancerClientAutoConfiguration {
 
 	@Configuration(proxyBeanMethods = false)
 	@ConditionalOnBean(LoadBalancerInterceptor.class)
+	@ConditionalOnProperty(value = "spring.cloud.security.oauth2.resource.hedging.enabled", havingValue = "false",
+			matchIfMissing = true)
 	protected static class UserInfoLoadBalancerConfig {
 
 		@Bean
@@ -64,6 +75,8 @@ public class OAuth2LoadBalancerClientAutoConfiguration {
 
 	@Configuration(proxyBeanMethods = false)
 	@ConditionalOnBean(RetryLoadBalancerInterceptor.class)
+	@ConditionalOnProperty(value = "spring.cloud.security.oauth2.resource.hedging.enabled", havingValue = "false",
+			matchIfMissing = true)
 	protected static class UserInfoRetryLoadBalancerConfig {
 
 		@Bean
@@ -81,4 +94,55 @@ public class OAuth2LoadBalancerClientAutoConfiguration {
 
 	}
 
+	/**
+	 * Takes the place of the load balancer interceptors, which are not registered when
+	 * hedging is enabled. Without a {@link LoadBalancerClient} it fails fast, rather than
+	 * leaving user info requests to go to the unresolved service id.
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty("spring.cloud.security.oauth2.resource.hedging.enabled")
+	@EnableConfigurationProperties(HedgingProperties.class)
+	protected static class UserInfoHedgingConfig {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public RetryBudget oauth2RetryBudget(HedgingProperties properties) {
+			return new RetryBudget(properties.getBudgetRatio(), properties.getBudgetMaxTokens());
+		}
+
+		@Bean
+		public HedgingClientHttpRequestInterceptor userInfoHedgingInterceptor(HedgingProperties properties,
+				ObjectProvider<LoadBalancerClient> loadBalancerClient, RetryBudget oauth2RetryBudget,
+				ObjectProvider<ClientHttpRequestFactory> requestFactory) {
+			LoadBalancerClient loadBalancer = loadBalancerClient.getIfAvailable();
+			if (loadBalancer == null) {
+				throw new IllegalStateException("spring.cloud.security.oauth2.resource.hedging.enabled "
+						+ "requires a LoadBalancerClient");
+			}
+			HedgingClientHttpRequestInterceptor interceptor = new HedgingClientHttpRequestInterceptor(
+					requestFactory.getIfUnique(SimpleClientHttpRequestFactory::new), loadBalancer,
+					oauth2RetryBudget, properties.getPercentile(), properties.getMaxThreads());
+			interceptor.setInitialDelay(properties.getInitialDelay());
+			interceptor.setMinDelay(properties.getMinDelay());
+			interceptor.setTimeout(properties.getTimeout());
+			return interceptor;
+		}
+
+		@Bean
+		public UserInfoRestTemplateCustomizer hedgingUserInfoRestTemplateCustomizer(
+				final HedgingClientHttpRequestInterceptor userInfoHedgingInterceptor) {
+			return new UserInfoRestTemplateCustomizer() {
+				@Override
+				public void customize(OAuth2RestTemplate restTemplate) {
+					// Never calls the rest of the chain, so it has to be the last interceptor
+					List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>(restTemplate.getInterceptors());
+					interceptors.remove(userInfoHedgingInterceptor);
+					interceptors.add(userInfoHedgingInterceptor);
+					restTemplate.setInterceptors(interceptors);
+				}
+			};
+		}
+
+	}
+
 }
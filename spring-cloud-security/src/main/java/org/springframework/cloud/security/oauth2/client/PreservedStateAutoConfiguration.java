@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+
+/**
+ * Replaces the {@link DefaultOAuth2ClientContext} instances created by Spring Boot and
+ * <code>@EnableOAuth2Client</code> (usually one per session) with
+ * {@link BoundedPreservedStateOAuth2ClientContext}, through a
+ * {@link BoundedPreservedStateOAuth2ClientContextPostProcessor}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(DefaultOAuth2ClientContext.class)
+@ConditionalOnProperty("spring.cloud.security.oauth2.client.preserved-state.enabled")
+@EnableConfigurationProperties(PreservedStateProperties.class)
+@Deprecated
+public class PreservedStateAutoConfiguration {
+
+	@Bean
+	public static BoundedPreservedStateOAuth2ClientContextPostProcessor boundedPreservedStatePostProcessor(
+			ObjectProvider<PreservedStateProperties> properties) {
+		return new BoundedPreservedStateOAuth2ClientContextPostProcessor(properties);
+	}
+
+}
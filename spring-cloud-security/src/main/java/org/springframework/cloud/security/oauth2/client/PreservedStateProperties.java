@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration for the state OAuth2 client contexts preserve for redirects to the
+ * authorization server.
+ */
+@ConfigurationProperties("spring.cloud.security.oauth2.client.preserved-state")
+@Deprecated
+public class PreservedStateProperties {
+
+	/**
+	 * Whether to bound the preserved state of the default client contexts.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Maximum number of redirects to preserve state for per context.
+	 */
+	private int maxEntries = 10;
+
+	/**
+	 * How long to preserve the state of a redirect for.
+	 */
+	private Duration timeToLive = Duration.ofMinutes(10);
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public Duration getTimeToLive() {
+		return timeToLive;
+	}
+
+	public void setTimeToLive(Duration timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
+import org.springframework.security.oauth2.client.token.AccessTokenRequest;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+/**
+ * An {@link OAuth2ClientContext} that relays the access token of the current request
+ * only when a client first asks for one. Until then the delegate, typically a request or
+ * session scoped proxy, is not touched, so requests that never call downstream services
+ * do not create the scoped context at all.
+ */
+@Deprecated
+public class RelayingOAuth2ClientContext implements OAuth2ClientContext {
+
+	private final OAuth2ClientContext delegate;
+
+	private final AccessTokenContextRelay relay;
+
+	public RelayingOAuth2ClientContext(OAuth2ClientContext delegate) {
+		this.delegate = delegate;
+		this.relay = new AccessTokenContextRelay(delegate);
+	}
+
+	/**
+	 * Record whether tokens are relayed or not.
+	 * @param metrics the metrics to record to
+	 */
+	public void setMetrics(OAuth2ClientMetrics metrics) {
+		this.relay.setMetrics(metrics);
+	}
+
+	/**
+	 * Relay a token exchanged for the incoming one instead of the incoming one itself.
+	 * @param tokenExchanger the exchanger to use, or null to relay the incoming token
+	 */
+	public void setTokenExchanger(TokenExchanger tokenExchanger) {
+		this.relay.setTokenExchanger(tokenExchanger);
+	}
+
+	@Override
+	public OAuth2AccessToken getAccessToken() {
+		OAuth2AccessToken accessToken = this.delegate.getAccessToken();
+		if (accessToken == null && this.relay.relayToken()) {
+			accessToken = this.delegate.getAccessToken();
+		}
+		return accessToken;
+	}
+
+	@Override
+	public void setAccessToken(OAuth2AccessToken accessToken) {
+		this.delegate.setAccessToken(accessToken);
+	}
+
+	@Override
+	public AccessTokenRequest getAccessTokenRequest() {
+		return this.delegate.getAccessTokenRequest();
+	}
+
+	@Override
+	public void setPreservedState(String stateKey, Object preservedState) {
+		this.delegate.setPreservedState(stateKey, preservedState);
+	}
+
+	@Override
+	public Object removePreservedState(String stateKey) {
+		return this.delegate.removePreservedState(stateKey);
+	}
+
+	/**
+	 * The context that tokens are relayed to.
+	 * @return the delegate context
+	 */
+	public OAuth2ClientContext getDelegate() {
+		return this.delegate;
+	}
+
+	AccessTokenContextRelay getRelay() {
+		return this.relay;
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import org.springframework.aop.scope.ScopedObject;
+import org.springframework.aop.scope.ScopedProxyUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
+
+/**
+ * Wraps scoped {@link OAuth2ClientContext} proxies in a
+ * {@link RelayingOAuth2ClientContext}, so that the incoming access token is relayed
+ * lazily instead of on every request, or in a
+ * {@link StatelessRelayingOAuth2ClientContext}, so that it is not stored in the scoped
+ * context at all.
+ */
+@Deprecated
+public class RelayingOAuth2ClientContextPostProcessor implements BeanPostProcessor {
+
+	private final ObjectProvider<OAuth2ClientMetrics> metrics;
+
+	private final boolean stateless;
+
+	private ObjectProvider<TokenExchanger> tokenExchanger;
+
+	public RelayingOAuth2ClientContextPostProcessor(ObjectProvider<OAuth2ClientMetrics> metrics) {
+		this(metrics, false);
+	}
+
+	public RelayingOAuth2ClientContextPostProcessor(ObjectProvider<OAuth2ClientMetrics> metrics, boolean stateless) {
+		this.metrics = metrics;
+		this.stateless = stateless;
+	}
+
+	/**
+	 * Relay tokens exchanged for the incoming ones.
+	 * @param tokenExchanger provides the exchanger to use, if there is one
+	 */
+	public void setTokenExchanger(ObjectProvider<TokenExchanger> tokenExchanger) {
+		this.tokenExchanger = tokenExchanger;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		// Only the proxies: the scoped targets behind them are created per request or
+		// session and relaying into a singleton context would leak tokens between users
+		if (bean instanceof OAuth2ClientContext && bean instanceof ScopedObject
+				&& !ScopedProxyUtils.isScopedTarget(beanName)) {
+			RelayingOAuth2ClientContext context = this.stateless
+					? new StatelessRelayingOAuth2ClientContext((OAuth2ClientContext) bean)
+					: new RelayingOAuth2ClientContext((OAuth2ClientContext) bean);
+			context.setMetrics(this.metrics.getIfAvailable());
+			if (this.tokenExchanger != null) {
+				context.setTokenExchanger(this.tokenExchanger.getIfAvailable());
+			}
+			return context;
+		}
+		return bean;
+	}
+
+}
@@ -21,25 +21,41 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.endpoint.web.WebEndpointProperties;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.AllNestedConditions;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.security.oauth2.OAuth2AutoConfiguration;
 import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoTokenServices;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.security.oauth2.client.ResourceServerTokenRelayAutoConfiguration.ConditionalOnOAuth2ClientInResourceServer;
+import org.springframework.cloud.security.oauth2.client.hedging.HedgingClientHttpRequestInterceptor;
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.security.oauth2.client.OAuth2ClientContext;
 import org.springframework.security.oauth2.config.annotation.web.configuration.OAuth2ClientConfiguration;
 import org.springframework.security.oauth2.config.annotation.web.configuration.ResourceServerConfiguration;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
@@ -65,12 +81,68 @@ import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 @ConditionalOnOAuth2ClientInResourceServer
 @ConditionalOnClass(ResourceServerConfiguration.class)
 @ConditionalOnWebApplication
+@EnableConfigurationProperties(TokenRelayProperties.class)
 @Deprecated
 public class ResourceServerTokenRelayAutoConfiguration {
 
+	private static final String WEB_ENDPOINT_PROPERTIES = "org.springframework.boot.actuate.autoconfigure."
+			+ "endpoint.web.WebEndpointProperties";
+
+	@Bean
+	public AccessTokenContextRelay accessTokenContextRelay(OAuth2ClientContext context,
+			ObjectProvider<OAuth2ClientMetrics> metrics, ObjectProvider<TokenExchanger> tokenExchanger) {
+		AccessTokenContextRelay relay = new AccessTokenContextRelay(context);
+		relay.setMetrics(metrics.getIfAvailable());
+		relay.setTokenExchanger(tokenExchanger.getIfAvailable());
+		return relay;
+	}
+
 	@Bean
-	public AccessTokenContextRelay accessTokenContextRelay(OAuth2ClientContext context) {
-		return new AccessTokenContextRelay(context);
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty("spring.cloud.security.oauth2.client.relay.exchange.enabled")
+	public TokenExchanger tokenExchanger(TokenRelayProperties properties,
+			ObjectProvider<ClientHttpRequestFactory> requestFactory,
+			ObjectProvider<HedgingClientHttpRequestInterceptor> hedgingInterceptor) {
+		TokenRelayProperties.Exchange exchange = properties.getExchange();
+		if (!StringUtils.hasText(exchange.getTokenUri())) {
+			throw new IllegalStateException(
+					"spring.cloud.security.oauth2.client.relay.exchange.token-uri must be set to exchange tokens");
+		}
+		RestTemplate restTemplate = new RestTemplate(requestFactory.getIfUnique(() -> {
+			SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+			factory.setConnectTimeout((int) exchange.getConnectTimeout().toMillis());
+			factory.setReadTimeout((int) exchange.getReadTimeout().toMillis());
+			return factory;
+		}));
+		if (exchange.isHedged()) {
+			HedgingClientHttpRequestInterceptor interceptor = hedgingInterceptor.getIfAvailable();
+			if (interceptor == null) {
+				throw new IllegalStateException("spring.cloud.security.oauth2.client.relay.exchange.hedged "
+						+ "requires spring.cloud.security.oauth2.resource.hedging.enabled");
+			}
+			restTemplate.getInterceptors().add(interceptor);
+		}
+		TokenExchanger exchanger = new TokenExchanger(restTemplate, exchange.getTokenUri());
+		exchanger.setClientId(exchange.getClientId());
+		exchanger.setClientSecret(exchange.getClientSecret());
+		exchanger.setAudience(exchange.getAudience());
+		exchanger.setScope(exchange.getScope());
+		exchanger.setMaxSize(exchange.getMaxSize());
+		exchanger.setTimeToLive(exchange.getTimeToLive());
+		exchanger.setTimeout(exchange.getTimeout());
+		return exchanger;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(TaskDecorator.class)
+	@ConditionalOnProperty("spring.cloud.security.oauth2.client.relay.async.enabled")
+	public AccessTokenRelayTaskDecorator accessTokenRelayTaskDecorator(TokenRelayProperties properties,
+			ObjectProvider<OAuth2ClientContext> clientContext) {
+		if (properties.getMode() != TokenRelayProperties.Mode.EAGER || properties.getExchange().isEnabled()) {
+			// The client context relays the token from the security context
+			return new AccessTokenRelayTaskDecorator();
+		}
+		return new AccessTokenRelayTaskDecorator(clientContext.getIfAvailable());
 	}
 
 	/**
@@ -80,13 +152,32 @@ public class ResourceServerTokenRelayAutoConfiguration {
 	 *
 	 */
 	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty(prefix = "spring.cloud.security.oauth2.client.relay", name = "mode", havingValue = "eager",
+			matchIfMissing = true)
 	public static class ResourceServerTokenRelayRegistrationAutoConfiguration implements WebMvcConfigurer {
 
 		@Autowired
 		AccessTokenContextRelay accessTokenContextRelay;
 
+		@Autowired
+		TokenRelayProperties tokenRelayProperties;
+
+		@Autowired
+		ListableBeanFactory beanFactory;
+
 		@Override
 		public void addInterceptors(InterceptorRegistry registry) {
+			if (tokenRelayProperties.getExchange().isEnabled()) {
+				// Exchanged lazily instead (see ExchangingTokenRelayConfiguration)
+				return;
+			}
+			List<String> excludePatterns = new ArrayList<>(tokenRelayProperties.getExcludePatterns());
+			if (ClassUtils.isPresent(WEB_ENDPOINT_PROPERTIES, null)) {
+				String actuatorPattern = ActuatorPaths.excludePattern(beanFactory);
+				if (actuatorPattern != null) {
+					excludePatterns.add(actuatorPattern);
+				}
+			}
 			registry.addInterceptor(
 
 					new HandlerInterceptorAdapter() {
@@ -98,7 +189,91 @@ public class ResourceServerTokenRelayAutoConfiguration {
 						}
 					}
 
-			);
+			).addPathPatterns(tokenRelayProperties.getIncludePatterns()).excludePathPatterns(excludePatterns);
+		}
+
+		/**
+		 * Exchanges the access token only when a client first reads it from the context,
+		 * so that requests that make no downstream calls do not pay for an exchange and a
+		 * failed exchange fails the downstream call rather than the incoming request.
+		 */
+		@Configuration(proxyBeanMethods = false)
+		@ConditionalOnProperty("spring.cloud.security.oauth2.client.relay.exchange.enabled")
+		static class ExchangingTokenRelayConfiguration {
+
+			@Bean
+			static RelayingOAuth2ClientContextPostProcessor exchangingOAuth2ClientContextPostProcessor(
+					ObjectProvider<OAuth2ClientMetrics> metrics, ObjectProvider<TokenExchanger> tokenExchanger) {
+				RelayingOAuth2ClientContextPostProcessor postProcessor = new RelayingOAuth2ClientContextPostProcessor(
+						metrics);
+				postProcessor.setTokenExchanger(tokenExchanger);
+				return postProcessor;
+			}
+
+		}
+
+	}
+
+	/**
+	 * Kept apart so that the actuator classes are only loaded when they are present.
+	 */
+	private static final class ActuatorPaths {
+
+		private ActuatorPaths() {
+		}
+
+		/**
+		 * The pattern of the actuator's endpoints, or null if there are none or they are
+		 * at the root (only allowed on a separate management port), where they cannot be
+		 * told apart from the paths of the application.
+		 */
+		static String excludePattern(ListableBeanFactory beanFactory) {
+			WebEndpointProperties properties = beanFactory.getBeanProvider(WebEndpointProperties.class)
+					.getIfAvailable();
+			if (properties == null) {
+				return null;
+			}
+			String basePath = StringUtils.trimTrailingCharacter(properties.getBasePath(), '/');
+			return StringUtils.hasText(basePath) ? basePath + "/**" : null;
+		}
+
+	}
+
+	/**
+	 * Relays the access token when a client first reads it from the context, instead of
+	 * in an MVC interceptor.
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty(prefix = "spring.cloud.security.oauth2.client.relay", name = "mode", havingValue = "lazy")
+	static class LazyTokenRelayConfiguration {
+
+		@Bean
+		static RelayingOAuth2ClientContextPostProcessor relayingOAuth2ClientContextPostProcessor(
+				ObjectProvider<OAuth2ClientMetrics> metrics, ObjectProvider<TokenExchanger> tokenExchanger) {
+			RelayingOAuth2ClientContextPostProcessor postProcessor = new RelayingOAuth2ClientContextPostProcessor(
+					metrics);
+			postProcessor.setTokenExchanger(tokenExchanger);
+			return postProcessor;
+		}
+
+	}
+
+	/**
+	 * Relays the access token from the current request without storing it in the client
+	 * context.
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty(prefix = "spring.cloud.security.oauth2.client.relay", name = "mode",
+			havingValue = "stateless")
+	static class StatelessTokenRelayConfiguration {
+
+		@Bean
+		static RelayingOAuth2ClientContextPostProcessor relayingOAuth2ClientContextPostProcessor(
+				ObjectProvider<OAuth2ClientMetrics> metrics, ObjectProvider<TokenExchanger> tokenExchanger) {
+			RelayingOAuth2ClientContextPostProcessor postProcessor = new RelayingOAuth2ClientContextPostProcessor(
+					metrics, true);
+			postProcessor.setTokenExchanger(tokenExchanger);
+			return postProcessor;
 		}
 
 	}
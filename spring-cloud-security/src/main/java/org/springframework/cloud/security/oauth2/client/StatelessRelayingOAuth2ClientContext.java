@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * A {@link RelayingOAuth2ClientContext} that keeps the relayed access token in the
+ * current request instead of copying it into the delegate. With a session scoped
+ * delegate, requests that relay their token then never write to (or even load) the
+ * session. The delegate is only used for requests that have no token to relay.
+ * <p>
+ * The token to relay is resolved (and exchanged, if there is a {@link TokenExchanger})
+ * once per request. If a client resets it during the request, typically because a
+ * downstream service rejected it with a 401, it is not relayed again for the rest of the
+ * request: the client sees no token and acquires its own, if it can.
+ */
+@Deprecated
+public class StatelessRelayingOAuth2ClientContext extends RelayingOAuth2ClientContext {
+
+	private static final String ACCESS_TOKEN_ATTRIBUTE = StatelessRelayingOAuth2ClientContext.class.getName()
+			+ ".ACCESS_TOKEN";
+
+	private static final Object NOT_RELAYED = new Object();
+
+	private static final Object RESET = new Object();
+
+	public StatelessRelayingOAuth2ClientContext(OAuth2ClientContext delegate) {
+		super(delegate);
+	}
+
+	@Override
+	public OAuth2AccessToken getAccessToken() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			// Nowhere to keep the token, so relay it on every read but do not count it
+			OAuth2AccessToken accessToken = getRelay().getTokenToRelay();
+			return accessToken != null ? accessToken : getDelegate().getAccessToken();
+		}
+		Object accessToken = attributes.getAttribute(ACCESS_TOKEN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		if (accessToken == null) {
+			accessToken = getRelay().getTokenToRelay();
+			if (accessToken != null) {
+				getRelay().recordRelay();
+			}
+			else {
+				accessToken = NOT_RELAYED;
+			}
+			attributes.setAttribute(ACCESS_TOKEN_ATTRIBUTE, accessToken, RequestAttributes.SCOPE_REQUEST);
+		}
+		if (accessToken == NOT_RELAYED) {
+			return getDelegate().getAccessToken();
+		}
+		if (accessToken == RESET) {
+			return null;
+		}
+		return (OAuth2AccessToken) accessToken;
+	}
+
+	@Override
+	public void setAccessToken(OAuth2AccessToken accessToken) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes != null && getRelay().getRelayedToken() != null) {
+			// Still a relaying request: a reset token (e.g. after a 401) is not relayed again
+			attributes.setAttribute(ACCESS_TOKEN_ATTRIBUTE, accessToken != null ? accessToken : RESET,
+					RequestAttributes.SCOPE_REQUEST);
+			return;
+		}
+		getDelegate().setAccessToken(accessToken);
+	}
+
+}
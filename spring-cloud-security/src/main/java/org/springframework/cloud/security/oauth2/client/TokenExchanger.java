@@ -0,0 +1,387 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.boot.json.JsonParser;
+import org.springframework.boot.json.JsonParserFactory;
+import org.springframework.cloud.security.oauth2.client.token.CoalescingAccessTokenAcquirer;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.client.resource.OAuth2AccessDeniedException;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.Assert;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestOperations;
+
+/**
+ * Exchanges relayed access tokens for tokens meant for a particular audience and scope,
+ * with an OAuth 2.0 Token Exchange (RFC 8693) request to the authorization server.
+ * Exchanged tokens are cached until they (or the subject tokens they were exchanged for)
+ * expire, keyed by a SHA-256 hash of the subject token, the audience and the scopes, and
+ * concurrent exchanges for the same key are coalesced into one request. The oldest
+ * entries are evicted once the cache is full. Failed exchanges are reported as
+ * {@link OAuth2AccessDeniedException}s, like failed token requests.
+ */
+@Deprecated
+public class TokenExchanger {
+
+	/**
+	 * The grant type of token exchange requests.
+	 */
+	public static final String GRANT_TYPE = "urn:ietf:params:oauth:grant-type:token-exchange";
+
+	/**
+	 * The token type of access tokens.
+	 */
+	public static final String ACCESS_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:access_token";
+
+	private static final JsonParser PARSER = JsonParserFactory.getJsonParser();
+
+	private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE =
+			new ParameterizedTypeReference<Map<String, Object>>() {
+			};
+
+	private final ConcurrentMap<ExchangeKey, ExchangedToken> tokens = new ConcurrentHashMap<>();
+
+	private final Queue<ExchangeKey> insertionOrder = new ConcurrentLinkedQueue<>();
+
+	private final CoalescingAccessTokenAcquirer acquirer = new CoalescingAccessTokenAcquirer();
+
+	private final RestOperations restOperations;
+
+	private final String tokenUri;
+
+	private String clientId;
+
+	private String clientSecret;
+
+	private String audience;
+
+	private List<String> scope = Collections.emptyList();
+
+	private int maxSize = 10000;
+
+	private Duration timeToLive = Duration.ofMinutes(5);
+
+	public TokenExchanger(RestOperations restOperations, String tokenUri) {
+		Assert.hasText(tokenUri, "tokenUri must not be empty");
+		this.restOperations = restOperations;
+		this.tokenUri = tokenUri;
+	}
+
+	/**
+	 * Exchange the token for one with the configured audience and scopes.
+	 * @param subjectToken the token to exchange
+	 * @return the exchanged token
+	 * @throws OAuth2AccessDeniedException if the exchange fails
+	 */
+	public OAuth2AccessToken exchange(OAuth2AccessToken subjectToken) {
+		return exchange(subjectToken, audience, scope);
+	}
+
+	/**
+	 * Exchange the token for one with the audience and scopes provided.
+	 * @param subjectToken the token to exchange
+	 * @param audience the audience of the new token, or null to leave it to the
+	 * authorization server
+	 * @param scope the scopes of the new token, or empty to leave them to the
+	 * authorization server
+	 * @return the exchanged token
+	 * @throws OAuth2AccessDeniedException if the exchange fails
+	 */
+	public OAuth2AccessToken exchange(OAuth2AccessToken subjectToken, String audience, Collection<String> scope) {
+		ExchangeKey key = new ExchangeKey(hash(subjectToken.getValue()), audience, scope);
+		OAuth2AccessToken accessToken = getCached(key);
+		if (accessToken != null) {
+			return accessToken;
+		}
+		try {
+			return acquirer.acquire(key, () -> {
+				// Another thread may have finished an exchange since we last looked
+				OAuth2AccessToken exchanged = getCached(key);
+				if (exchanged == null) {
+					exchanged = requestExchange(subjectToken, audience, key.scope);
+					put(key, exchanged, subjectExpiry(subjectToken));
+				}
+				return exchanged;
+			});
+		}
+		catch (IllegalStateException e) {
+			// Timed out or interrupted waiting for an exchange started by another caller
+			throw new OAuth2AccessDeniedException("Token exchange at " + tokenUri + " failed", null, e);
+		}
+	}
+
+	private OAuth2AccessToken requestExchange(OAuth2AccessToken subjectToken, String audience, List<String> scope) {
+		MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+		form.add("grant_type", GRANT_TYPE);
+		form.add("subject_token", subjectToken.getValue());
+		form.add("subject_token_type", ACCESS_TOKEN_TYPE);
+		form.add("requested_token_type", ACCESS_TOKEN_TYPE);
+		if (StringUtils.hasText(audience)) {
+			form.add("audience", audience);
+		}
+		if (!scope.isEmpty()) {
+			form.add("scope", StringUtils.collectionToDelimitedString(scope, " "));
+		}
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+		headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+		if (clientId != null) {
+			headers.setBasicAuth(formEncode(clientId), formEncode(clientSecret != null ? clientSecret : ""));
+		}
+		Map<String, Object> response;
+		try {
+			response = restOperations
+					.exchange(tokenUri, HttpMethod.POST, new HttpEntity<>(form, headers), RESPONSE_TYPE).getBody();
+		}
+		catch (RestClientException e) {
+			throw new OAuth2AccessDeniedException("Token exchange at " + tokenUri + " failed", null, e);
+		}
+		if (response == null || !(response.get(OAuth2AccessToken.ACCESS_TOKEN) instanceof String)) {
+			throw new OAuth2AccessDeniedException("Token exchange at " + tokenUri + " returned no access token");
+		}
+		return accessToken(response);
+	}
+
+	private static OAuth2AccessToken accessToken(Map<String, Object> response) {
+		DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken(
+				(String) response.get(OAuth2AccessToken.ACCESS_TOKEN));
+		Object tokenType = response.get(OAuth2AccessToken.TOKEN_TYPE);
+		if (tokenType != null) {
+			accessToken.setTokenType(tokenType.toString());
+		}
+		Object expiresIn = response.get(OAuth2AccessToken.EXPIRES_IN);
+		if (expiresIn != null) {
+			accessToken.setExpiration(
+					new Date(System.currentTimeMillis() + Long.parseLong(expiresIn.toString()) * 1000L));
+		}
+		Object scope = response.get(OAuth2AccessToken.SCOPE);
+		if (scope != null) {
+			accessToken.setScope(new LinkedHashSet<>(
+					Arrays.asList(StringUtils.tokenizeToStringArray(scope.toString(), " "))));
+		}
+		return accessToken;
+	}
+
+	private OAuth2AccessToken getCached(ExchangeKey key) {
+		ExchangedToken exchanged = tokens.get(key);
+		return exchanged != null && System.currentTimeMillis() < exchanged.expiry ? exchanged.accessToken : null;
+	}
+
+	private void put(ExchangeKey key, OAuth2AccessToken accessToken, Long subjectExpiry) {
+		Date expiration = accessToken.getExpiration();
+		long expiry = expiration != null ? expiration.getTime() : System.currentTimeMillis() + timeToLive.toMillis();
+		if (subjectExpiry != null && subjectExpiry < expiry) {
+			// Whoever relays the exchanged token must not outlive the token they presented
+			expiry = subjectExpiry;
+		}
+		// Expired entries are only replaced, never removed, so every key in the map is in
+		// the queue exactly once
+		if (tokens.put(key, new ExchangedToken(accessToken, expiry)) == null) {
+			insertionOrder.add(key);
+			while (tokens.size() > maxSize) {
+				ExchangeKey eldest = insertionOrder.poll();
+				if (eldest == null) {
+					break;
+				}
+				tokens.remove(eldest);
+			}
+		}
+	}
+
+	/**
+	 * The expiry of the subject token in milliseconds, from its expiration if it has one,
+	 * otherwise from its <code>exp</code> claim if it is a JWT.
+	 */
+	private static Long subjectExpiry(OAuth2AccessToken subjectToken) {
+		if (subjectToken.getExpiration() != null) {
+			return subjectToken.getExpiration().getTime();
+		}
+		String[] parts = subjectToken.getValue().split("\\.");
+		if (parts.length != 3) {
+			return null;
+		}
+		try {
+			String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+			Object exp = PARSER.parseMap(payload).get("exp");
+			return exp instanceof Number ? ((Number) exp).longValue() * 1000L : null;
+		}
+		catch (IllegalArgumentException e) {
+			// Not a JWT (JsonParseException is an IllegalArgumentException)
+			return null;
+		}
+	}
+
+	private static String hash(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	// RFC 6749 section 2.3.1: the credentials are form encoded before they are Base64 encoded
+	private static String formEncode(String value) {
+		try {
+			return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 not available", e);
+		}
+	}
+
+	/**
+	 * @return the number of exchanged tokens currently held (including expired ones that
+	 * have not been replaced or evicted yet)
+	 */
+	public int size() {
+		return tokens.size();
+	}
+
+	public void setClientId(String clientId) {
+		this.clientId = clientId;
+	}
+
+	public void setClientSecret(String clientSecret) {
+		this.clientSecret = clientSecret;
+	}
+
+	/**
+	 * @param audience the audience to request tokens for by default
+	 */
+	public void setAudience(String audience) {
+		this.audience = audience;
+	}
+
+	/**
+	 * @param scope the scopes to request by default
+	 */
+	public void setScope(Collection<String> scope) {
+		this.scope = scope != null ? new ArrayList<>(scope) : Collections.emptyList();
+	}
+
+	/**
+	 * @param maxSize the maximum number of exchanged tokens to keep (default 10000)
+	 */
+	public void setMaxSize(int maxSize) {
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param timeToLive how long to keep exchanged tokens that have no expiry (default 5
+	 * minutes)
+	 */
+	public void setTimeToLive(Duration timeToLive) {
+		Assert.notNull(timeToLive, "timeToLive must not be null");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * @param timeout the maximum time to wait for an exchange started by another caller
+	 * (default 10 seconds)
+	 */
+	public void setTimeout(Duration timeout) {
+		acquirer.setTimeout(timeout);
+	}
+
+	private static final class ExchangedToken {
+
+		private final OAuth2AccessToken accessToken;
+
+		private final long expiry;
+
+		ExchangedToken(OAuth2AccessToken accessToken, long expiry) {
+			this.accessToken = accessToken;
+			this.expiry = expiry;
+		}
+
+	}
+
+	private static final class ExchangeKey {
+
+		private final String subjectTokenHash;
+
+		private final String audience;
+
+		private final List<String> scope;
+
+		ExchangeKey(String subjectTokenHash, String audience, Collection<String> scope) {
+			List<String> sorted = scope == null ? new ArrayList<>() : new ArrayList<>(scope);
+			Collections.sort(sorted);
+			this.subjectTokenHash = subjectTokenHash;
+			this.audience = audience;
+			this.scope = Collections.unmodifiableList(sorted);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			ExchangeKey other = (ExchangeKey) o;
+			return subjectTokenHash.equals(other.subjectTokenHash) && Objects.equals(audience, other.audience)
+					&& scope.equals(other.scope);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(subjectTokenHash, audience, scope);
+		}
+
+		@Override
+		public String toString() {
+			return "ExchangeKey [audience=" + audience + ", scope=" + scope + "]";
+		}
+
+	}
+
+}
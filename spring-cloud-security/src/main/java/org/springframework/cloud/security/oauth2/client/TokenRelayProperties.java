@@ -0,0 +1,301 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration for relaying incoming access tokens to the client context of a resource
+ * server.
+ */
+@ConfigurationProperties("spring.cloud.security.oauth2.client.relay")
+@Deprecated
+public class TokenRelayProperties {
+
+	/**
+	 * When to relay the incoming access token to the client context.
+	 */
+	private Mode mode = Mode.EAGER;
+
+	/**
+	 * Path patterns of the requests to relay tokens for.
+	 */
+	private List<String> includePatterns = new ArrayList<>(Arrays.asList("/**"));
+
+	/**
+	 * Path patterns of the requests not to relay tokens for, e.g. because they never
+	 * call downstream services. The endpoints of the actuator (under its base path) are
+	 * always excluded.
+	 */
+	private List<String> excludePatterns = new ArrayList<>(
+			Arrays.asList("/webjars/**", "/css/**", "/js/**", "/images/**", "/favicon.ico"));
+
+	private final Async async = new Async();
+
+	private final Exchange exchange = new Exchange();
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	public List<String> getIncludePatterns() {
+		return includePatterns;
+	}
+
+	public void setIncludePatterns(List<String> includePatterns) {
+		this.includePatterns = includePatterns;
+	}
+
+	public List<String> getExcludePatterns() {
+		return excludePatterns;
+	}
+
+	public void setExcludePatterns(List<String> excludePatterns) {
+		this.excludePatterns = excludePatterns;
+	}
+
+	public Async getAsync() {
+		return async;
+	}
+
+	public Exchange getExchange() {
+		return exchange;
+	}
+
+	/**
+	 * Relaying to tasks that run on other threads.
+	 */
+	public static class Async {
+
+		/**
+		 * Whether to register a task decorator that makes the relayed token available to
+		 * tasks run by the application task executor.
+		 */
+		private boolean enabled;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+	}
+
+	/**
+	 * Exchanging the incoming token for the one to relay (RFC 8693).
+	 */
+	public static class Exchange {
+
+		/**
+		 * Whether to relay a token exchanged for the incoming one instead of the
+		 * incoming one itself.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Token endpoint of the authorization server.
+		 */
+		private String tokenUri;
+
+		/**
+		 * Client id to authenticate the exchange with.
+		 */
+		private String clientId;
+
+		/**
+		 * Client secret to authenticate the exchange with.
+		 */
+		private String clientSecret;
+
+		/**
+		 * Audience to request the relayed token for.
+		 */
+		private String audience;
+
+		/**
+		 * Scopes to request for the relayed token.
+		 */
+		private List<String> scope = new ArrayList<>();
+
+		/**
+		 * Maximum number of exchanged tokens to keep.
+		 */
+		private int maxSize = 10000;
+
+		/**
+		 * How long to keep exchanged tokens that have no expiry.
+		 */
+		private Duration timeToLive = Duration.ofMinutes(5);
+
+		/**
+		 * Maximum time to wait for an exchange that was started by another thread.
+		 */
+		private Duration timeout = Duration.ofSeconds(10);
+
+		/**
+		 * Connect timeout of exchange requests, unless the application has a (pooled)
+		 * request factory of its own.
+		 */
+		private Duration connectTimeout = Duration.ofSeconds(2);
+
+		/**
+		 * Read timeout of exchange requests, unless the application has a (pooled)
+		 * request factory of its own.
+		 */
+		private Duration readTimeout = Duration.ofSeconds(10);
+
+		/**
+		 * Whether to hedge exchange requests with the hedging interceptor of the user
+		 * info requests. The host of the token URI must then be the id of the load
+		 * balanced authorization server.
+		 */
+		private boolean hedged;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getTokenUri() {
+			return tokenUri;
+		}
+
+		public void setTokenUri(String tokenUri) {
+			this.tokenUri = tokenUri;
+		}
+
+		public String getClientId() {
+			return clientId;
+		}
+
+		public void setClientId(String clientId) {
+			this.clientId = clientId;
+		}
+
+		public String getClientSecret() {
+			return clientSecret;
+		}
+
+		public void setClientSecret(String clientSecret) {
+			this.clientSecret = clientSecret;
+		}
+
+		public String getAudience() {
+			return audience;
+		}
+
+		public void setAudience(String audience) {
+			this.audience = audience;
+		}
+
+		public List<String> getScope() {
+			return scope;
+		}
+
+		public void setScope(List<String> scope) {
+			this.scope = scope;
+		}
+
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		public void setMaxSize(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public Duration getTimeToLive() {
+			return timeToLive;
+		}
+
+		public void setTimeToLive(Duration timeToLive) {
+			this.timeToLive = timeToLive;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+
+		public Duration getConnectTimeout() {
+			return connectTimeout;
+		}
+
+		public void setConnectTimeout(Duration connectTimeout) {
+			this.connectTimeout = connectTimeout;
+		}
+
+		public Duration getReadTimeout() {
+			return readTimeout;
+		}
+
+		public void setReadTimeout(Duration readTimeout) {
+			this.readTimeout = readTimeout;
+		}
+
+		public boolean isHedged() {
+			return hedged;
+		}
+
+		public void setHedged(boolean hedged) {
+			this.hedged = hedged;
+		}
+
+	}
+
+	/**
+	 * When to relay the incoming access token.
+	 */
+	public enum Mode {
+
+		/**
+		 * Copy the token into the client context before each request is handled.
+		 */
+		EAGER,
+
+		/**
+		 * Copy the token into the client context only when a client first reads it, so
+		 * requests that make no downstream calls never touch the context.
+		 */
+		LAZY,
+
+		/**
+		 * Keep the token in the current request only, so that relaying never writes to
+		 * a session scoped client context.
+		 */
+		STATELESS
+
+	}
+
+}
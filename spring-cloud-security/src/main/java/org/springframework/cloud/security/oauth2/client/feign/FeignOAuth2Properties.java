@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.feign;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.AuthenticationScheme;
+
+/**
+ * Configuration for Feign clients that obtain their own <code>client_credentials</code>
+ * tokens.
+ */
+@ConfigurationProperties("spring.cloud.security.feign")
+@Deprecated
+public class FeignOAuth2Properties {
+
+	/**
+	 * Whether to add access tokens to the requests of the Feign clients configured here.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Credentials by Feign client name.
+	 */
+	private Map<String, Client> clients = new LinkedHashMap<>();
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Map<String, Client> getClients() {
+		return clients;
+	}
+
+	public void setClients(Map<String, Client> clients) {
+		this.clients = clients;
+	}
+
+	public static class Client {
+
+		/**
+		 * Token endpoint of the authorization server.
+		 */
+		private String accessTokenUri;
+
+		/**
+		 * OAuth2 client id.
+		 */
+		private String clientId;
+
+		/**
+		 * OAuth2 client secret.
+		 */
+		private String clientSecret;
+
+		/**
+		 * Scopes to request.
+		 */
+		private List<String> scope = new ArrayList<>();
+
+		/**
+		 * How to send the client credentials to the token endpoint.
+		 */
+		private AuthenticationScheme clientAuthenticationScheme = AuthenticationScheme.header;
+
+		public String getAccessTokenUri() {
+			return accessTokenUri;
+		}
+
+		public void setAccessTokenUri(String accessTokenUri) {
+			this.accessTokenUri = accessTokenUri;
+		}
+
+		public String getClientId() {
+			return clientId;
+		}
+
+		public void setClientId(String clientId) {
+			this.clientId = clientId;
+		}
+
+		public String getClientSecret() {
+			return clientSecret;
+		}
+
+		public void setClientSecret(String clientSecret) {
+			this.clientSecret = clientSecret;
+		}
+
+		public List<String> getScope() {
+			return scope;
+		}
+
+		public void setScope(List<String> scope) {
+			this.scope = scope;
+		}
+
+		public AuthenticationScheme getClientAuthenticationScheme() {
+			return clientAuthenticationScheme;
+		}
+
+		public void setClientAuthenticationScheme(AuthenticationScheme clientAuthenticationScheme) {
+			this.clientAuthenticationScheme = clientAuthenticationScheme;
+		}
+
+		ClientCredentialsResourceDetails toResourceDetails(String name) {
+			ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+			resource.setId(name);
+			resource.setAccessTokenUri(accessTokenUri);
+			resource.setClientId(clientId);
+			resource.setClientSecret(clientSecret);
+			resource.setScope(scope);
+			resource.setClientAuthenticationScheme(clientAuthenticationScheme);
+			return resource;
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.feign;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import feign.RequestInterceptor;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetricsAutoConfiguration;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCache;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenPrewarmer;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenProviderDispatcher;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenRefreshScheduler;
+import org.springframework.cloud.security.oauth2.client.token.CoalescingAccessTokenAcquirer;
+import org.springframework.cloud.security.oauth2.client.token.OAuth2ClientTokenAutoConfiguration;
+import org.springframework.cloud.security.oauth2.client.token.StaleAccessTokenFallback;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+
+/**
+ * Adds <code>client_credentials</code> tokens to the requests of the Feign clients
+ * configured with <code>spring.cloud.security.feign.clients.&lt;name&gt;.*</code>. All
+ * of them use the shared token infrastructure from
+ * {@link OAuth2ClientTokenAutoConfiguration}, and clients with the same credentials share
+ * a token.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ RequestInterceptor.class, OAuth2ProtectedResourceDetails.class })
+@ConditionalOnProperty("spring.cloud.security.feign.enabled")
+@AutoConfigureAfter({ OAuth2ClientTokenAutoConfiguration.class, OAuth2ClientMetricsAutoConfiguration.class })
+@EnableConfigurationProperties(FeignOAuth2Properties.class)
+@Deprecated
+public class OAuth2FeignClientsAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public OAuth2FeignClientsRequestInterceptor oauth2FeignClientsRequestInterceptor(FeignOAuth2Properties properties,
+			ObjectProvider<AccessTokenProviderDispatcher> accessTokenProviderDispatcher,
+			ObjectProvider<AccessTokenCache> accessTokenCache,
+			ObjectProvider<CoalescingAccessTokenAcquirer> accessTokenAcquirer,
+			ObjectProvider<AccessTokenRefreshScheduler> accessTokenRefreshScheduler,
+			ObjectProvider<StaleAccessTokenFallback> staleAccessTokenFallback,
+			ObjectProvider<OAuth2ClientMetrics> metrics, ObjectProvider<AccessTokenPrewarmer> accessTokenPrewarmer) {
+		Map<String, ClientCredentialsResourceDetails> resources = new LinkedHashMap<>();
+		properties.getClients().forEach((name, client) -> resources.put(name, client.toResourceDetails(name)));
+		OAuth2FeignClientsRequestInterceptor interceptors = new OAuth2FeignClientsRequestInterceptor(resources,
+				(resource) -> {
+					// Client credentials are not bound to a request, so neither is the context
+					OAuth2FeignRequestInterceptor interceptor = new OAuth2FeignRequestInterceptor(
+							new DefaultOAuth2ClientContext(), resource);
+					accessTokenProviderDispatcher.ifAvailable(interceptor::setAccessTokenProvider);
+					interceptor.setAccessTokenCache(accessTokenCache.getIfAvailable());
+					interceptor.setAccessTokenAcquirer(accessTokenAcquirer.getIfAvailable());
+					interceptor.setAccessTokenRefreshScheduler(accessTokenRefreshScheduler.getIfAvailable());
+					interceptor.setStaleAccessTokenFallback(staleAccessTokenFallback.getIfAvailable());
+					interceptor.setMetrics(metrics.getIfAvailable());
+					return interceptor;
+				});
+		// Warm the tokens of the clients through their own interceptors
+		accessTokenPrewarmer.ifAvailable((prewarmer) -> resources.forEach(
+				(name, resource) -> prewarmer.addAcquisition(resource, interceptors.getInterceptor(name)::getToken)));
+		return interceptors;
+	}
+
+}
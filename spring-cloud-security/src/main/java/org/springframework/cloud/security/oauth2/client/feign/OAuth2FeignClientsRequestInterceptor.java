@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.feign;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import feign.Target;
+
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCacheKey;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+
+/**
+ * A single {@link RequestInterceptor} for many Feign clients, which hands each request to
+ * the {@link OAuth2FeignRequestInterceptor} for the name of the client that makes it.
+ * Clients with the same credentials share an interceptor (and so a token). Requests of
+ * other clients are left alone.
+ */
+@Deprecated
+public class OAuth2FeignClientsRequestInterceptor implements RequestInterceptor {
+
+	private final Map<String, OAuth2FeignRequestInterceptor> interceptors;
+
+	/**
+	 * Create an interceptor for the resources provided.
+	 * @param resources the resources by Feign client name
+	 * @param interceptorFactory creates an interceptor for a resource. It is called once
+	 * per set of credentials.
+	 */
+	public OAuth2FeignClientsRequestInterceptor(Map<String, ? extends OAuth2ProtectedResourceDetails> resources,
+			Function<OAuth2ProtectedResourceDetails, OAuth2FeignRequestInterceptor> interceptorFactory) {
+		Map<AccessTokenCacheKey, OAuth2FeignRequestInterceptor> byCredentials = new LinkedHashMap<>();
+		Map<String, OAuth2FeignRequestInterceptor> interceptors = new LinkedHashMap<>();
+		resources.forEach((name, resource) -> interceptors.put(name, byCredentials
+				.computeIfAbsent(AccessTokenCacheKey.of(resource), (key) -> interceptorFactory.apply(resource))));
+		this.interceptors = Collections.unmodifiableMap(interceptors);
+	}
+
+	@Override
+	public void apply(RequestTemplate template) {
+		Target<?> target = template.feignTarget();
+		if (target == null) {
+			return;
+		}
+		OAuth2FeignRequestInterceptor interceptor = interceptors.get(target.name());
+		if (interceptor != null) {
+			interceptor.apply(template);
+		}
+	}
+
+	/**
+	 * @param name the name of a Feign client
+	 * @return the interceptor for the client, or null if there is none
+	 */
+	public OAuth2FeignRequestInterceptor getInterceptor(String name) {
+		return interceptors.get(name);
+	}
+
+}
@@ -16,23 +16,29 @@
 
 package org.springframework.cloud.security.oauth2.client.feign;
 
-import java.util.Arrays;
+import java.util.function.Supplier;
 
 import feign.RequestInterceptor;
 import feign.RequestTemplate;
 
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCache;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCacheKey;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenProviderDispatcher;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenRefreshScheduler;
+import org.springframework.cloud.security.oauth2.client.token.CoalescingAccessTokenAcquirer;
+import org.springframework.cloud.security.oauth2.client.token.StaleAccessTokenFallback;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.security.oauth2.client.OAuth2ClientContext;
 import org.springframework.security.oauth2.client.http.AccessTokenRequiredException;
 import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
 import org.springframework.security.oauth2.client.resource.UserRedirectRequiredException;
 import org.springframework.security.oauth2.client.token.AccessTokenProvider;
-import org.springframework.security.oauth2.client.token.AccessTokenProviderChain;
 import org.springframework.security.oauth2.client.token.AccessTokenRequest;
-import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsAccessTokenProvider;
-import org.springframework.security.oauth2.client.token.grant.code.AuthorizationCodeAccessTokenProvider;
-import org.springframework.security.oauth2.client.token.grant.implicit.ImplicitAccessTokenProvider;
-import org.springframework.security.oauth2.client.token.grant.password.ResourceOwnerPasswordAccessTokenProvider;
+import org.springframework.security.oauth2.client.token.DefaultAccessTokenRequest;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
 import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.ObjectUtils;
 
 /**
  * Pre-defined custom RequestInterceptor for Feign Requests. It uses the
@@ -64,9 +70,22 @@ public class OAuth2FeignRequestInterceptor implements RequestInterceptor {
 
 	private final String header;
 
-	private AccessTokenProvider accessTokenProvider = new AccessTokenProviderChain(Arrays.<AccessTokenProvider>asList(
-			new AuthorizationCodeAccessTokenProvider(), new ImplicitAccessTokenProvider(),
-			new ResourceOwnerPasswordAccessTokenProvider(), new ClientCredentialsAccessTokenProvider()));
+	// Shared by all the interceptors that do not configure their own provider
+	private AccessTokenProvider accessTokenProvider = AccessTokenProviderDispatcher.of(null);
+
+	private AccessTokenCache accessTokenCache;
+
+	private CoalescingAccessTokenAcquirer accessTokenAcquirer;
+
+	private AccessTokenRefreshScheduler accessTokenRefreshScheduler;
+
+	private StaleAccessTokenFallback staleAccessTokenFallback;
+
+	private OAuth2ClientMetrics metrics = OAuth2ClientMetrics.NONE;
+
+	private volatile AccessTokenCacheKey accessTokenCacheKey;
+
+	private volatile AuthorizationHeader authorizationHeader;
 
 	/**
 	 * Default constructor which uses the provided OAuth2ClientContext and Bearer tokens
@@ -115,12 +134,21 @@ public class OAuth2FeignRequestInterceptor implements RequestInterceptor {
 	 */
 	protected String extract(String tokenType) {
 		OAuth2AccessToken accessToken = getToken();
-		return String.format("%s %s", tokenType, accessToken.getValue());
+		// Tokens are reused for many requests, so only render the value once per token
+		AuthorizationHeader authorizationHeader = this.authorizationHeader;
+		if (authorizationHeader == null || !authorizationHeader.matches(accessToken, tokenType)) {
+			authorizationHeader = new AuthorizationHeader(accessToken, tokenType);
+			this.authorizationHeader = authorizationHeader;
+		}
+		return authorizationHeader.value;
 	}
 
 	/**
 	 * Extract the access token within the request or try to acquire a new one by
-	 * delegating it to {@link #acquireAccessToken()}.
+	 * delegating it to {@link #acquireAccessToken()}. Client credentials tokens are
+	 * looked up in the {@link AccessTokenCache} (if there is one) before a new one is
+	 * acquired, and concurrent acquisitions of the same token are coalesced by the
+	 * {@link CoalescingAccessTokenAcquirer} (if there is one).
 	 * @return valid token
 	 */
 	public OAuth2AccessToken getToken() {
@@ -128,7 +156,7 @@ public class OAuth2FeignRequestInterceptor implements RequestInterceptor {
 		OAuth2AccessToken accessToken = oAuth2ClientContext.getAccessToken();
 		if (accessToken == null || accessToken.isExpired()) {
 			try {
-				accessToken = acquireAccessToken();
+				accessToken = isClientCredentials() ? obtainSharedAccessToken() : timed(this::acquireAccessToken);
 			}
 			catch (UserRedirectRequiredException e) {
 				oAuth2ClientContext.setAccessToken(null);
@@ -146,6 +174,93 @@ public class OAuth2FeignRequestInterceptor implements RequestInterceptor {
 		return accessToken;
 	}
 
+	private OAuth2AccessToken obtainSharedAccessToken() {
+		OAuth2AccessToken accessToken = getCachedAccessToken();
+		if (accessTokenCache != null) {
+			if (accessToken != null) {
+				metrics.cacheHit(resource);
+			}
+			else {
+				metrics.cacheMiss(resource);
+			}
+		}
+		if (accessToken == null) {
+			accessToken = acquireSharedAccessToken();
+		}
+		oAuth2ClientContext.setAccessToken(accessToken);
+		return accessToken;
+	}
+
+	private OAuth2AccessToken acquireSharedAccessToken() {
+		Supplier<OAuth2AccessToken> acquisition = this::acquireAndCacheAccessToken;
+		if (staleAccessTokenFallback != null) {
+			// Inside the coalescing, so that a failure counts once and not once per caller
+			acquisition = () -> staleAccessTokenFallback.acquire(accessTokenCacheKey(),
+					this::acquireAndCacheAccessToken, this::refreshSharedAccessToken);
+		}
+		if (accessTokenAcquirer != null) {
+			return accessTokenAcquirer.acquire(accessTokenCacheKey(), acquisition);
+		}
+		return acquisition.get();
+	}
+
+	private OAuth2AccessToken acquireAndCacheAccessToken() {
+		// Another thread may have finished an acquisition since we last looked
+		OAuth2AccessToken accessToken = getCachedAccessToken();
+		if (accessToken == null) {
+			accessToken = timed(this::acquireAccessToken);
+			if (accessTokenCache != null) {
+				accessTokenCache.put(accessTokenCacheKey(), accessToken);
+				if (accessTokenRefreshScheduler != null) {
+					accessTokenRefreshScheduler.schedule(accessTokenCacheKey(), accessToken,
+							this::refreshSharedAccessToken);
+				}
+			}
+		}
+		return accessToken;
+	}
+
+	private OAuth2AccessToken refreshSharedAccessToken() {
+		// Runs in the background, so there is no (request scoped) client context
+		OAuth2AccessToken accessToken = timed(
+				() -> accessTokenProvider.obtainAccessToken(resource, new DefaultAccessTokenRequest()));
+		if (accessToken == null || accessToken.getValue() == null) {
+			throw new IllegalStateException(
+					"Access token provider returned a null token, which is illegal according to the contract.");
+		}
+		if (accessTokenCache != null) {
+			accessTokenCache.put(accessTokenCacheKey(), accessToken);
+		}
+		return accessToken;
+	}
+
+	private OAuth2AccessToken timed(Supplier<OAuth2AccessToken> acquisition) {
+		long start = System.nanoTime();
+		try {
+			OAuth2AccessToken accessToken = acquisition.get();
+			metrics.acquisition(resource, System.nanoTime() - start, null);
+			return accessToken;
+		}
+		catch (RuntimeException e) {
+			metrics.acquisition(resource, System.nanoTime() - start, e);
+			throw e;
+		}
+	}
+
+	private OAuth2AccessToken getCachedAccessToken() {
+		return accessTokenCache != null ? accessTokenCache.get(accessTokenCacheKey()) : null;
+	}
+
+	private AccessTokenCacheKey accessTokenCacheKey() {
+		// Computed once, since it hashes the client secret
+		AccessTokenCacheKey key = this.accessTokenCacheKey;
+		if (key == null) {
+			key = AccessTokenCacheKey.of(resource);
+			this.accessTokenCacheKey = key;
+		}
+		return key;
+	}
+
 	/**
 	 * Try to acquire the token using a access token provider.
 	 * @return valid access token
@@ -176,8 +291,126 @@ public class OAuth2FeignRequestInterceptor implements RequestInterceptor {
 		return obtainableAccessToken;
 	}
 
+	private boolean isClientCredentials() {
+		return resource instanceof ClientCredentialsResourceDetails;
+	}
+
 	public void setAccessTokenProvider(AccessTokenProvider accessTokenProvider) {
 		this.accessTokenProvider = accessTokenProvider;
 	}
 
+	boolean usesDefaultAccessTokenProvider() {
+		return accessTokenProvider == AccessTokenProviderDispatcher.of(null);
+	}
+
+	/**
+	 * Make the calls to the token endpoint through the request factory provided, e.g. one
+	 * with a connection pool. Replaces the access token provider with the default chain
+	 * of providers using the request factory, which is shared with all the other
+	 * interceptors using the same request factory.
+	 * @param requestFactory the request factory to use
+	 * @see AccessTokenProviderDispatcher#of(ClientHttpRequestFactory)
+	 */
+	public void setAccessTokenRequestFactory(ClientHttpRequestFactory requestFactory) {
+		this.accessTokenProvider = AccessTokenProviderDispatcher.of(requestFactory);
+	}
+
+	/**
+	 * Share client credentials tokens with other interceptors (usually all the ones in
+	 * the same process) through the cache provided. Interceptor beans without a cache get
+	 * the {@link AccessTokenCache} bean of the application. The cache key of the resource
+	 * is computed once, on first use, so its credentials must not change after that.
+	 * @param accessTokenCache the cache to use, or null to only use the client context
+	 */
+	public void setAccessTokenCache(AccessTokenCache accessTokenCache) {
+		this.accessTokenCache = accessTokenCache;
+	}
+
+	boolean hasAccessTokenCache() {
+		return accessTokenCache != null;
+	}
+
+	/**
+	 * Coalesce concurrent acquisitions of client credentials tokens, so that only one
+	 * request per set of credentials goes to the authorization server when a token
+	 * expires. Share the acquirer between interceptors to coalesce across them, as
+	 * interceptor beans without one do with the {@link CoalescingAccessTokenAcquirer}
+	 * bean of the application.
+	 * @param accessTokenAcquirer the acquirer to use, or null to let every thread acquire
+	 * its own token
+	 */
+	public void setAccessTokenAcquirer(CoalescingAccessTokenAcquirer accessTokenAcquirer) {
+		this.accessTokenAcquirer = accessTokenAcquirer;
+	}
+
+	boolean hasAccessTokenAcquirer() {
+		return accessTokenAcquirer != null;
+	}
+
+	/**
+	 * Renew client credentials tokens in the background before they expire. Only used if
+	 * there is also an {@link #setAccessTokenCache(AccessTokenCache) AccessTokenCache},
+	 * since that is where renewed tokens are published. Interceptor beans without a
+	 * scheduler get the {@link AccessTokenRefreshScheduler} bean of the application, if
+	 * there is one.
+	 * @param accessTokenRefreshScheduler the scheduler to use, or null to only acquire
+	 * tokens when they have expired
+	 */
+	public void setAccessTokenRefreshScheduler(AccessTokenRefreshScheduler accessTokenRefreshScheduler) {
+		this.accessTokenRefreshScheduler = accessTokenRefreshScheduler;
+	}
+
+	boolean hasAccessTokenRefreshScheduler() {
+		return accessTokenRefreshScheduler != null;
+	}
+
+	/**
+	 * Keep using the last client credentials token for a while after it has expired,
+	 * while a new one is acquired in the background, and stop calling the authorization
+	 * server after repeated failures. Interceptor beans without a fallback get the
+	 * {@link StaleAccessTokenFallback} bean of the application, if there is one.
+	 * @param staleAccessTokenFallback the fallback to use, or null to fail whenever an
+	 * acquisition fails
+	 */
+	public void setStaleAccessTokenFallback(StaleAccessTokenFallback staleAccessTokenFallback) {
+		this.staleAccessTokenFallback = staleAccessTokenFallback;
+	}
+
+	boolean hasStaleAccessTokenFallback() {
+		return staleAccessTokenFallback != null;
+	}
+
+	/**
+	 * Record token acquisitions and cache lookups. Interceptor beans that record nowhere
+	 * record to the {@link OAuth2ClientMetrics} bean of the application, if there is one.
+	 * @param metrics the metrics to record to
+	 */
+	public void setMetrics(OAuth2ClientMetrics metrics) {
+		this.metrics = metrics != null ? metrics : OAuth2ClientMetrics.NONE;
+	}
+
+	boolean hasMetrics() {
+		return metrics != OAuth2ClientMetrics.NONE;
+	}
+
+	private static final class AuthorizationHeader {
+
+		private final OAuth2AccessToken accessToken;
+
+		private final String tokenType;
+
+		private final String value;
+
+		AuthorizationHeader(OAuth2AccessToken accessToken, String tokenType) {
+			this.accessToken = accessToken;
+			this.tokenType = tokenType;
+			this.value = tokenType + " " + accessToken.getValue();
+		}
+
+		boolean matches(OAuth2AccessToken accessToken, String tokenType) {
+			return this.accessToken == accessToken && ObjectUtils.nullSafeEquals(this.tokenType, tokenType);
+		}
+
+	}
+
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.feign;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCache;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenProviderDispatcher;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenRefreshScheduler;
+import org.springframework.cloud.security.oauth2.client.token.CoalescingAccessTokenAcquirer;
+import org.springframework.cloud.security.oauth2.client.token.StaleAccessTokenFallback;
+
+/**
+ * Gives {@link OAuth2FeignRequestInterceptor} beans the shared token infrastructure of the
+ * application, so that interceptors wired by hand benefit from it like the ones
+ * configured from properties. Interceptors that still use the default access token
+ * provider get the {@link AccessTokenProviderDispatcher} of the application, so that
+ * their token requests use the same (e.g. pooled) request factory as the rest of the
+ * token infrastructure. Interceptors without an {@link AccessTokenCache}, a
+ * {@link CoalescingAccessTokenAcquirer}, an {@link AccessTokenRefreshScheduler}, a
+ * {@link StaleAccessTokenFallback} or {@link OAuth2ClientMetrics} get the ones of the
+ * application (if there are any). Whatever an interceptor was given explicitly is left
+ * alone.
+ */
+@Deprecated
+public class OAuth2FeignRequestInterceptorPostProcessor implements BeanPostProcessor {
+
+	private final ObjectProvider<AccessTokenProviderDispatcher> accessTokenProviderDispatcher;
+
+	private ObjectProvider<AccessTokenCache> accessTokenCache;
+
+	private ObjectProvider<CoalescingAccessTokenAcquirer> accessTokenAcquirer;
+
+	private ObjectProvider<AccessTokenRefreshScheduler> accessTokenRefreshScheduler;
+
+	private ObjectProvider<StaleAccessTokenFallback> staleAccessTokenFallback;
+
+	private ObjectProvider<OAuth2ClientMetrics> metrics;
+
+	public OAuth2FeignRequestInterceptorPostProcessor(
+			ObjectProvider<AccessTokenProviderDispatcher> accessTokenProviderDispatcher) {
+		this.accessTokenProviderDispatcher = accessTokenProviderDispatcher;
+	}
+
+	/**
+	 * Share client credentials tokens through the cache of the application.
+	 * @param accessTokenCache provides the cache to use, if there is one
+	 */
+	public void setAccessTokenCache(ObjectProvider<AccessTokenCache> accessTokenCache) {
+		this.accessTokenCache = accessTokenCache;
+	}
+
+	/**
+	 * Coalesce concurrent token acquisitions with the acquirer of the application.
+	 * @param accessTokenAcquirer provides the acquirer to use, if there is one
+	 */
+	public void setAccessTokenAcquirer(ObjectProvider<CoalescingAccessTokenAcquirer> accessTokenAcquirer) {
+		this.accessTokenAcquirer = accessTokenAcquirer;
+	}
+
+	/**
+	 * Renew tokens ahead of their expiry with the scheduler of the application.
+	 * @param accessTokenRefreshScheduler provides the scheduler to use, if there is one
+	 */
+	public void setAccessTokenRefreshScheduler(
+			ObjectProvider<AccessTokenRefreshScheduler> accessTokenRefreshScheduler) {
+		this.accessTokenRefreshScheduler = accessTokenRefreshScheduler;
+	}
+
+	/**
+	 * Fall back to stale tokens with the fallback of the application.
+	 * @param staleAccessTokenFallback provides the fallback to use, if there is one
+	 */
+	public void setStaleAccessTokenFallback(ObjectProvider<StaleAccessTokenFallback> staleAccessTokenFallback) {
+		this.staleAccessTokenFallback = staleAccessTokenFallback;
+	}
+
+	/**
+	 * Record token acquisitions and cache lookups to the metrics of the application.
+	 * @param metrics provides the metrics to record to, if there are any
+	 */
+	public void setMetrics(ObjectProvider<OAuth2ClientMetrics> metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof OAuth2FeignRequestInterceptor) {
+			OAuth2FeignRequestInterceptor interceptor = (OAuth2FeignRequestInterceptor) bean;
+			if (interceptor.usesDefaultAccessTokenProvider()) {
+				AccessTokenProviderDispatcher dispatcher = this.accessTokenProviderDispatcher.getIfAvailable();
+				if (dispatcher != null) {
+					interceptor.setAccessTokenProvider(dispatcher);
+				}
+			}
+			if (this.accessTokenCache != null && !interceptor.hasAccessTokenCache()) {
+				interceptor.setAccessTokenCache(this.accessTokenCache.getIfAvailable());
+			}
+			if (this.accessTokenAcquirer != null && !interceptor.hasAccessTokenAcquirer()) {
+				interceptor.setAccessTokenAcquirer(this.accessTokenAcquirer.getIfAvailable());
+			}
+			if (this.accessTokenRefreshScheduler != null && !interceptor.hasAccessTokenRefreshScheduler()) {
+				interceptor.setAccessTokenRefreshScheduler(this.accessTokenRefreshScheduler.getIfAvailable());
+			}
+			if (this.staleAccessTokenFallback != null && !interceptor.hasStaleAccessTokenFallback()) {
+				interceptor.setStaleAccessTokenFallback(this.staleAccessTokenFallback.getIfAvailable());
+			}
+			if (this.metrics != null && !interceptor.hasMetrics()) {
+				interceptor.setMetrics(this.metrics.getIfAvailable());
+			}
+		}
+		return bean;
+	}
+
+}
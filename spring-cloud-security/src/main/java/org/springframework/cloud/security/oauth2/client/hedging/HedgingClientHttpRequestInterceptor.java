@@ -0,0 +1,307 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.hedging;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+/**
+ * {@link ClientHttpRequestInterceptor} that sends a second, hedged request to another
+ * instance of the service when the first one has not answered within the current
+ * percentile (by default the 95th) of recent response times, and returns whichever
+ * response arrives first. Hedges are paid for from a {@link RetryBudget}, usually shared
+ * by all the hedging interceptors in the process, so that they add a bounded fraction of
+ * load. A failed attempt is not retried.
+ * <p>
+ * The interceptor picks the instances itself, through the {@link LoadBalancerClient}, and
+ * sends the requests through its own {@link ClientHttpRequestFactory}. It never calls
+ * the {@link ClientHttpRequestExecution}, which can only run the rest of the chain once
+ * and on the calling thread, while the attempts run on other threads. So it has to be
+ * the last interceptor, after any that have to see every request, and it replaces the
+ * load balancer interceptor. The attempts run on a bounded pool of threads: when it is
+ * exhausted, requests are sent without hedging on the calling thread. A request fails
+ * with a {@link SocketTimeoutException} if no attempt has answered within the timeout.
+ * <p>
+ * Requests for access tokens are not hedged: a hedged token request would issue a second
+ * token, and the token endpoint is not called through the load balancer. The
+ * {@link org.springframework.cloud.security.oauth2.client.TokenExchanger} can be set up
+ * to hedge its exchanges, since it caches and coalesces them.
+ */
+@Deprecated
+public class HedgingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor, DisposableBean {
+
+	private final ClientHttpRequestFactory requestFactory;
+
+	private final LoadBalancerClient loadBalancer;
+
+	private final RetryBudget retryBudget;
+
+	private final LatencyPercentile latencies;
+
+	private final ThreadPoolExecutor executor;
+
+	private Duration initialDelay = Duration.ofMillis(100);
+
+	private Duration minDelay = Duration.ofMillis(10);
+
+	private Duration timeout = Duration.ofSeconds(10);
+
+	/**
+	 * @param requestFactory sends the requests
+	 * @param loadBalancer chooses the instances, or null to send every attempt to the URI
+	 * of the request
+	 * @param retryBudget the budget for hedged requests
+	 * @param percentile the percentile of recent response times after which to hedge,
+	 * e.g. 0.95
+	 */
+	public HedgingClientHttpRequestInterceptor(ClientHttpRequestFactory requestFactory,
+			LoadBalancerClient loadBalancer, RetryBudget retryBudget, double percentile) {
+		this(requestFactory, loadBalancer, retryBudget, percentile, 100);
+	}
+
+	/**
+	 * @param requestFactory sends the requests
+	 * @param loadBalancer chooses the instances, or null to send every attempt to the URI
+	 * of the request
+	 * @param retryBudget the budget for hedged requests
+	 * @param percentile the percentile of recent response times after which to hedge,
+	 * e.g. 0.95
+	 * @param maxThreads the maximum number of attempts in flight at once
+	 */
+	public HedgingClientHttpRequestInterceptor(ClientHttpRequestFactory requestFactory,
+			LoadBalancerClient loadBalancer, RetryBudget retryBudget, double percentile, int maxThreads) {
+		Assert.notNull(requestFactory, "requestFactory must not be null");
+		Assert.notNull(retryBudget, "retryBudget must not be null");
+		Assert.isTrue(percentile > 0 && percentile < 1, "percentile must be between 0 and 1");
+		Assert.isTrue(maxThreads > 0, "maxThreads must be positive");
+		this.requestFactory = requestFactory;
+		this.loadBalancer = loadBalancer;
+		this.retryBudget = retryBudget;
+		this.latencies = new LatencyPercentile(percentile);
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("oauth2-hedge-");
+		threadFactory.setDaemon(true);
+		// No queue: an attempt either gets a thread right away or is not made this way
+		this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+				new SynchronousQueue<>(), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @param initialDelay the delay before hedging until enough response times have been
+	 * recorded (default 100ms)
+	 */
+	public void setInitialDelay(Duration initialDelay) {
+		Assert.notNull(initialDelay, "initialDelay must not be null");
+		this.initialDelay = initialDelay;
+	}
+
+	/**
+	 * @param minDelay the minimum delay before hedging (default 10ms)
+	 */
+	public void setMinDelay(Duration minDelay) {
+		Assert.notNull(minDelay, "minDelay must not be null");
+		this.minDelay = minDelay;
+	}
+
+	/**
+	 * @param timeout how long to wait at most for a response, from any attempt (default
+	 * 10 seconds)
+	 */
+	public void setTimeout(Duration timeout) {
+		Assert.notNull(timeout, "timeout must not be null");
+		this.timeout = timeout;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		retryBudget.deposit();
+		long deadline = System.nanoTime() + timeout.toNanos();
+		Attempts attempts = new Attempts();
+		ServiceInstance first = choose(request, null);
+		if (!attempts.submit(request, body, first)) {
+			// All the threads are busy: no hedging for this request
+			return execute(request, body, first);
+		}
+		try {
+			return attempts.result.get(Math.min(hedgeDelayNanos(), deadline - System.nanoTime()),
+					TimeUnit.NANOSECONDS);
+		}
+		catch (TimeoutException e) {
+			if (deadline - System.nanoTime() > 0 && retryBudget.tryWithdraw()) {
+				attempts.submit(request, body, choose(request, first));
+			}
+			return await(request, attempts.result, deadline);
+		}
+		catch (ExecutionException e) {
+			throw rethrow(e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for " + request.getURI());
+		}
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	private long hedgeDelayNanos() {
+		long percentile = latencies.get();
+		if (percentile < 0) {
+			return initialDelay.toNanos();
+		}
+		return Math.max(minDelay.toNanos(), percentile);
+	}
+
+	private ServiceInstance choose(HttpRequest request, ServiceInstance avoid) {
+		if (loadBalancer == null) {
+			return null;
+		}
+		String serviceId = request.getURI().getHost();
+		ServiceInstance instance = loadBalancer.choose(serviceId);
+		if (instance != null && avoid != null && sameInstance(instance, avoid)) {
+			ServiceInstance other = loadBalancer.choose(serviceId);
+			instance = other != null ? other : instance;
+		}
+		if (instance == null) {
+			throw new IllegalStateException("No instances available for " + serviceId);
+		}
+		return instance;
+	}
+
+	private static boolean sameInstance(ServiceInstance one, ServiceInstance other) {
+		return one.getHost().equals(other.getHost()) && one.getPort() == other.getPort();
+	}
+
+	private ClientHttpResponse execute(HttpRequest request, byte[] body, ServiceInstance instance)
+			throws IOException {
+		URI uri = instance != null ? loadBalancer.reconstructURI(instance, request.getURI()) : request.getURI();
+		ClientHttpRequest attempt = requestFactory.createRequest(uri, request.getMethod());
+		attempt.getHeaders().putAll(request.getHeaders());
+		if (body.length > 0) {
+			StreamUtils.copy(body, attempt.getBody());
+		}
+		return attempt.execute();
+	}
+
+	private ClientHttpResponse await(HttpRequest request, CompletableFuture<ClientHttpResponse> result,
+			long deadline) throws IOException {
+		try {
+			return result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+		catch (TimeoutException | CancellationException e) {
+			// Responses that arrive later are closed
+			result.cancel(false);
+			throw new SocketTimeoutException("No response from " + request.getURI() + " within " + timeout);
+		}
+		catch (ExecutionException e) {
+			throw rethrow(e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for response");
+		}
+	}
+
+	private static IOException rethrow(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof IOException) {
+			return (IOException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new IOException(cause);
+	}
+
+	/**
+	 * The attempts for one request. The first response wins, the others are closed as
+	 * they arrive. The request fails only when every attempt that was sent has failed.
+	 */
+	private final class Attempts {
+
+		private final CompletableFuture<ClientHttpResponse> result = new CompletableFuture<>();
+
+		private final AtomicInteger outstanding = new AtomicInteger();
+
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		boolean submit(HttpRequest request, byte[] body, ServiceInstance instance) {
+			outstanding.incrementAndGet();
+			try {
+				executor.execute(() -> attempt(request, body, instance));
+				return true;
+			}
+			catch (RejectedExecutionException e) {
+				if (outstanding.decrementAndGet() == 0 && failure.get() != null) {
+					result.completeExceptionally(failure.get());
+				}
+				return false;
+			}
+		}
+
+		private void attempt(HttpRequest request, byte[] body, ServiceInstance instance) {
+			long start = System.nanoTime();
+			try {
+				ClientHttpResponse response = execute(request, body, instance);
+				latencies.record(System.nanoTime() - start);
+				if (!result.complete(response)) {
+					response.close();
+				}
+			}
+			catch (IOException | RuntimeException | Error e) {
+				failure.compareAndSet(null, e);
+				if (outstanding.decrementAndGet() == 0) {
+					result.completeExceptionally(failure.get());
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.hedging;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration for hedging load balanced user info requests.
+ */
+@ConfigurationProperties("spring.cloud.security.oauth2.resource.hedging")
+@Deprecated
+public class HedgingProperties {
+
+	/**
+	 * Whether to send a second user info request to another instance when the first one
+	 * is slow. Requires security.oauth2.resource.loadBalanced.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Percentile of recent response times after which to send the second request.
+	 */
+	private double percentile = 0.95;
+
+	/**
+	 * Delay before the second request until enough response times have been recorded.
+	 */
+	private Duration initialDelay = Duration.ofMillis(100);
+
+	/**
+	 * Minimum delay before the second request.
+	 */
+	private Duration minDelay = Duration.ofMillis(10);
+
+	/**
+	 * Number of second requests allowed per request, across the application.
+	 */
+	private double budgetRatio = 0.1;
+
+	/**
+	 * Maximum number of second requests that can be sent in a burst.
+	 */
+	private int budgetMaxTokens = 10;
+
+	/**
+	 * Maximum number of requests (first and second) in flight at once. Beyond it
+	 * requests are sent without a second one.
+	 */
+	private int maxThreads = 100;
+
+	/**
+	 * How long to wait at most for a response from any of the requests.
+	 */
+	private Duration timeout = Duration.ofSeconds(10);
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public double getPercentile() {
+		return percentile;
+	}
+
+	public void setPercentile(double percentile) {
+		this.percentile = percentile;
+	}
+
+	public Duration getInitialDelay() {
+		return initialDelay;
+	}
+
+	public void setInitialDelay(Duration initialDelay) {
+		this.initialDelay = initialDelay;
+	}
+
+	public Duration getMinDelay() {
+		return minDelay;
+	}
+
+	public void setMinDelay(Duration minDelay) {
+		this.minDelay = minDelay;
+	}
+
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	public void setBudgetRatio(double budgetRatio) {
+		this.budgetRatio = budgetRatio;
+	}
+
+	public int getBudgetMaxTokens() {
+		return budgetMaxTokens;
+	}
+
+	public void setBudgetMaxTokens(int budgetMaxTokens) {
+		this.budgetMaxTokens = budgetMaxTokens;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	public void setMaxThreads(int maxThreads) {
+		this.maxThreads = maxThreads;
+	}
+
+	public Duration getTimeout() {
+		return timeout;
+	}
+
+	public void setTimeout(Duration timeout) {
+		this.timeout = timeout;
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.hedging;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A percentile of the most recent latencies, recomputed every few samples so that reading
+ * it is cheap.
+ */
+@Deprecated
+class LatencyPercentile {
+
+	private static final int SAMPLES = 256;
+
+	private static final int RECOMPUTE_EVERY = 32;
+
+	private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final double percentile;
+
+	private volatile long value = -1;
+
+	LatencyPercentile(double percentile) {
+		this.percentile = percentile;
+	}
+
+	void record(long nanos) {
+		long n = count.getAndIncrement();
+		samples.set((int) (n % SAMPLES), nanos);
+		if ((n + 1) % RECOMPUTE_EVERY == 0) {
+			int size = (int) Math.min(n + 1, SAMPLES);
+			long[] sorted = new long[size];
+			for (int i = 0; i < size; i++) {
+				sorted[i] = samples.get(i);
+			}
+			Arrays.sort(sorted);
+			value = sorted[Math.max(0, (int) Math.ceil(percentile * size) - 1)];
+		}
+	}
+
+	/**
+	 * @return the percentile in nanoseconds, or -1 until there are enough samples
+	 */
+	long get() {
+		return value;
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.hedging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * Limits extra requests (hedges or retries) to a fraction of the original requests, across
+ * all the callers that share the budget. Every original request deposits the configured
+ * ratio of a token, every extra request withdraws a whole one, and the balance is capped,
+ * so that a burst of slow responses cannot turn into a burst of twice as many requests.
+ */
+@Deprecated
+public class RetryBudget {
+
+	private static final long SCALE = 1000;
+
+	private final long deposit;
+
+	private final long maxBalance;
+
+	private final AtomicLong balance;
+
+	/**
+	 * @param ratio the number of extra requests allowed per original request, e.g. 0.1
+	 * for 10%
+	 * @param maxTokens the maximum number of extra requests that can be saved up, which
+	 * is also the initial balance
+	 */
+	public RetryBudget(double ratio, int maxTokens) {
+		Assert.isTrue(ratio >= 0, "ratio must not be negative");
+		Assert.isTrue(maxTokens >= 0, "maxTokens must not be negative");
+		this.deposit = (long) (ratio * SCALE);
+		this.maxBalance = maxTokens * SCALE;
+		this.balance = new AtomicLong(this.maxBalance);
+	}
+
+	/**
+	 * Record an original request.
+	 */
+	public void deposit() {
+		balance.updateAndGet((current) -> Math.min(maxBalance, current + deposit));
+	}
+
+	/**
+	 * Try to spend the budget on an extra request.
+	 * @return true if the extra request may be sent
+	 */
+	public boolean tryWithdraw() {
+		long current;
+		do {
+			current = balance.get();
+			if (current < SCALE) {
+				return false;
+			}
+		}
+		while (!balance.compareAndSet(current, current - SCALE));
+		return true;
+	}
+
+}
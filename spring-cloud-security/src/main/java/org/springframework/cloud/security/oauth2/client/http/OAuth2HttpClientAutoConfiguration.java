@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.http;
+
+import org.apache.http.client.HttpClient;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoRestTemplateCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenProviderDispatcher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.OAuth2RestTemplate;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+
+/**
+ * Provides a pooled {@link PooledClientHttpRequestFactory} for calls to the
+ * authorization server and uses it for the user info {@link OAuth2RestTemplate} and for
+ * token requests, through the shared {@link AccessTokenProviderDispatcher} of the
+ * request factory.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ HttpClient.class, OAuth2ProtectedResourceDetails.class })
+@ConditionalOnProperty("spring.cloud.security.oauth2.http-client.enabled")
+@EnableConfigurationProperties(OAuth2HttpClientProperties.class)
+@Deprecated
+public class OAuth2HttpClientAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public PooledClientHttpRequestFactory oauth2ClientHttpRequestFactory(OAuth2HttpClientProperties properties) {
+		return new PooledClientHttpRequestFactory(properties);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public AccessTokenProviderDispatcher pooledAccessTokenProviderDispatcher(
+			PooledClientHttpRequestFactory oauth2ClientHttpRequestFactory) {
+		return AccessTokenProviderDispatcher.of(oauth2ClientHttpRequestFactory);
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(UserInfoRestTemplateCustomizer.class)
+	protected static class UserInfoRequestFactoryConfiguration {
+
+		@Bean
+		public UserInfoRestTemplateCustomizer pooledUserInfoRestTemplateCustomizer(
+				final PooledClientHttpRequestFactory oauth2ClientHttpRequestFactory) {
+			return new UserInfoRestTemplateCustomizer() {
+				@Override
+				public void customize(OAuth2RestTemplate restTemplate) {
+					restTemplate.setRequestFactory(oauth2ClientHttpRequestFactory);
+				}
+			};
+		}
+
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.http;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration for the pooled HTTP client used to call the token and user info
+ * endpoints.
+ */
+@ConfigurationProperties("spring.cloud.security.oauth2.http-client")
+@Deprecated
+public class OAuth2HttpClientProperties {
+
+	/**
+	 * Whether to call the token and user info endpoints through a pooled HTTP client.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Maximum number of connections in the pool.
+	 */
+	private int maxConnections = 100;
+
+	/**
+	 * Maximum number of connections in the pool per host.
+	 */
+	private int maxConnectionsPerRoute = 20;
+
+	/**
+	 * Timeout for establishing a connection.
+	 */
+	private Duration connectTimeout = Duration.ofSeconds(2);
+
+	/**
+	 * Timeout for waiting for data on an open connection.
+	 */
+	private Duration readTimeout = Duration.ofSeconds(10);
+
+	/**
+	 * Timeout for obtaining a connection from the pool.
+	 */
+	private Duration connectionRequestTimeout = Duration.ofSeconds(2);
+
+	/**
+	 * How long to keep a connection alive when the server does not say. Connections are
+	 * closed after being idle for this long.
+	 */
+	private Duration keepAlive = Duration.ofSeconds(30);
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(Duration connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public Duration getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(Duration readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public Duration getConnectionRequestTimeout() {
+		return connectionRequestTimeout;
+	}
+
+	public void setConnectionRequestTimeout(Duration connectionRequestTimeout) {
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	public Duration getKeepAlive() {
+		return keepAlive;
+	}
+
+	public void setKeepAlive(Duration keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+}
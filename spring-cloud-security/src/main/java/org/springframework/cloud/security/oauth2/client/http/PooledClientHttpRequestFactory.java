@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.http;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * {@link HttpComponentsClientHttpRequestFactory} backed by a connection pool, so that
+ * repeated calls to the authorization server reuse connections (and their TLS sessions)
+ * instead of opening a new one each time. Idle and expired connections are evicted in the
+ * background. Closing the factory closes the pool.
+ */
+@Deprecated
+public class PooledClientHttpRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+	public PooledClientHttpRequestFactory(OAuth2HttpClientProperties properties) {
+		super(HttpClients.custom().setConnectionManager(connectionManager(properties))
+				.setDefaultRequestConfig(requestConfig(properties))
+				.setKeepAliveStrategy(keepAliveStrategy(properties.getKeepAlive().toMillis()))
+				.evictExpiredConnections()
+				.evictIdleConnections(properties.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS).build());
+	}
+
+	private static PoolingHttpClientConnectionManager connectionManager(OAuth2HttpClientProperties properties) {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(properties.getMaxConnections());
+		connectionManager.setDefaultMaxPerRoute(properties.getMaxConnectionsPerRoute());
+		return connectionManager;
+	}
+
+	private static RequestConfig requestConfig(OAuth2HttpClientProperties properties) {
+		return RequestConfig.custom().setConnectTimeout((int) properties.getConnectTimeout().toMillis())
+				.setSocketTimeout((int) properties.getReadTimeout().toMillis())
+				.setConnectionRequestTimeout((int) properties.getConnectionRequestTimeout().toMillis()).build();
+	}
+
+	private static ConnectionKeepAliveStrategy keepAliveStrategy(long keepAlive) {
+		return (response, context) -> {
+			long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			return duration > 0 ? duration : keepAlive;
+		};
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.resource.UserRedirectRequiredException;
+
+/**
+ * {@link OAuth2ClientMetrics} that records to a Micrometer {@link MeterRegistry}:
+ *
+ * <ul>
+ * <li><code>spring.cloud.security.oauth2.token.acquisitions</code>: timer of requests to
+ * the authorization server, tagged with <code>resource</code>, <code>grant.type</code>
+ * and <code>outcome</code> (<code>success</code>, <code>failure</code> or
+ * <code>redirect</code> for a {@link UserRedirectRequiredException}).</li>
+ * <li><code>spring.cloud.security.oauth2.token.cache</code>: counter of shared cache
+ * lookups, tagged with <code>resource</code>, <code>grant.type</code> and
+ * <code>result</code> (<code>hit</code> or <code>miss</code>).</li>
+ * <li><code>spring.cloud.security.oauth2.token.relay</code>: counter of relay attempts,
+ * tagged with <code>result</code> (<code>copied</code> or <code>skipped</code>).</li>
+ * </ul>
+ */
+@Deprecated
+public class MicrometerOAuth2ClientMetrics implements OAuth2ClientMetrics {
+
+	private static final String ACQUISITIONS = "spring.cloud.security.oauth2.token.acquisitions";
+
+	private static final String CACHE = "spring.cloud.security.oauth2.token.cache";
+
+	private static final String RELAY = "spring.cloud.security.oauth2.token.relay";
+
+	private final MeterRegistry registry;
+
+	private final ConcurrentMap<Tags, Counter> counters = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Tags, Timer> timers = new ConcurrentHashMap<>();
+
+	private final Counter relayCopied;
+
+	private final Counter relaySkipped;
+
+	public MicrometerOAuth2ClientMetrics(MeterRegistry registry) {
+		this.registry = registry;
+		this.relayCopied = Counter.builder(RELAY).description("Incoming tokens relayed to the client context")
+				.tag("result", "copied").register(registry);
+		this.relaySkipped = Counter.builder(RELAY).description("Incoming tokens relayed to the client context")
+				.tag("result", "skipped").register(registry);
+	}
+
+	@Override
+	public void cacheHit(OAuth2ProtectedResourceDetails resource) {
+		cacheCounter(resource, "hit").increment();
+	}
+
+	@Override
+	public void cacheMiss(OAuth2ProtectedResourceDetails resource) {
+		cacheCounter(resource, "miss").increment();
+	}
+
+	@Override
+	public void acquisition(OAuth2ProtectedResourceDetails resource, long nanos, Throwable failure) {
+		String outcome = failure == null ? "success"
+				: failure instanceof UserRedirectRequiredException ? "redirect" : "failure";
+		Tags tags = tags(resource).and("outcome", outcome);
+		timers.computeIfAbsent(tags, key -> Timer.builder(ACQUISITIONS)
+				.description("Access token requests to the authorization server").tags(key).register(registry))
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void relay(boolean copied) {
+		(copied ? relayCopied : relaySkipped).increment();
+	}
+
+	private Counter cacheCounter(OAuth2ProtectedResourceDetails resource, String result) {
+		Tags tags = tags(resource).and("result", result);
+		return counters.computeIfAbsent(tags, key -> Counter.builder(CACHE)
+				.description("Shared access token cache lookups").tags(key).register(registry));
+	}
+
+	private Tags tags(OAuth2ProtectedResourceDetails resource) {
+		String id = resource.getId() != null ? resource.getId() : resource.getClientId();
+		return Tags.of("resource", String.valueOf(id), "grant.type", String.valueOf(resource.getGrantType()));
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.metrics;
+
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+
+/**
+ * Callback for recording what the OAuth2 client components do with access tokens. It is
+ * an interface of its own (rather than a meter registry) so that the components do not
+ * depend on a metrics library being on the classpath.
+ *
+ * @see MicrometerOAuth2ClientMetrics
+ */
+@Deprecated
+public interface OAuth2ClientMetrics {
+
+	/**
+	 * Metrics that are not recorded anywhere.
+	 */
+	OAuth2ClientMetrics NONE = new OAuth2ClientMetrics() {
+	};
+
+	/**
+	 * A token for the resource was found in a shared cache.
+	 * @param resource the resource
+	 */
+	default void cacheHit(OAuth2ProtectedResourceDetails resource) {
+	}
+
+	/**
+	 * A token for the resource was looked up in a shared cache but not found.
+	 * @param resource the resource
+	 */
+	default void cacheMiss(OAuth2ProtectedResourceDetails resource) {
+	}
+
+	/**
+	 * A token was requested from the authorization server.
+	 * @param resource the resource the token was requested for
+	 * @param nanos how long the request took
+	 * @param failure the exception if the request failed, otherwise null
+	 */
+	default void acquisition(OAuth2ProtectedResourceDetails resource, long nanos, Throwable failure) {
+	}
+
+	/**
+	 * An incoming token was (or was not) relayed to the client context.
+	 * @param copied true if the token was copied
+	 */
+	default void relay(boolean copied) {
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+
+/**
+ * Records OAuth2 client metrics to the {@link MeterRegistry}, if there is one.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ MeterRegistry.class, OAuth2ProtectedResourceDetails.class })
+@ConditionalOnBean(MeterRegistry.class)
+@AutoConfigureAfter(
+		name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
+@Deprecated
+public class OAuth2ClientMetricsAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public OAuth2ClientMetrics oauth2ClientMetrics(MeterRegistry registry) {
+		return new MicrometerOAuth2ClientMetrics(registry);
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.reactive;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCache;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCacheKey;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenRefreshScheduler;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.client.resource.OAuth2AccessDeniedException;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.AuthenticationScheme;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * {@link ReactiveAccessTokenSource} for <code>client_credentials</code> resources that
+ * calls the token endpoint with a {@link WebClient}. It has the same semantics as the
+ * blocking <code>OAuth2FeignRequestInterceptor</code>: tokens are shared through the
+ * {@link AccessTokenCache}, concurrent requests for the same credentials share one call
+ * to the token endpoint, and tokens can be renewed ahead of expiry by an
+ * {@link AccessTokenRefreshScheduler}. A token from an in-memory cache is returned
+ * without any thread hop. Caches that may block (e.g. Redis) are only called on the
+ * bounded elastic scheduler, never on the event loop.
+ */
+@Deprecated
+public class ClientCredentialsReactiveAccessTokenSource implements ReactiveAccessTokenSource {
+
+	private static final Duration REFRESH_TIMEOUT = Duration.ofSeconds(30);
+
+	private final ConcurrentMap<AccessTokenCacheKey, Mono<OAuth2AccessToken>> inFlight = new ConcurrentHashMap<>();
+
+	private final WebClient webClient;
+
+	private final AccessTokenCache accessTokenCache;
+
+	private AccessTokenRefreshScheduler accessTokenRefreshScheduler;
+
+	private OAuth2ClientMetrics metrics = OAuth2ClientMetrics.NONE;
+
+	/**
+	 * @param webClient the client to call token endpoints with
+	 * @param accessTokenCache the cache to share tokens through (usually the same one
+	 * that blocking clients use), or null to keep no tokens
+	 */
+	public ClientCredentialsReactiveAccessTokenSource(WebClient webClient, AccessTokenCache accessTokenCache) {
+		this.webClient = webClient;
+		this.accessTokenCache = accessTokenCache;
+	}
+
+	@Override
+	public Mono<OAuth2AccessToken> getToken(OAuth2ProtectedResourceDetails resource) {
+		if (!(resource instanceof ClientCredentialsResourceDetails)) {
+			return Mono.error(new IllegalArgumentException(
+					"Only client_credentials resources are supported, not '" + resource.getId() + "'"));
+		}
+		// Computed once per call, since it hashes the client secret
+		AccessTokenCacheKey key = AccessTokenCacheKey.of(resource);
+		if (accessTokenCache == null) {
+			return shared(resource, key);
+		}
+		return cached(key).doOnNext(accessToken -> metrics.cacheHit(resource)).switchIfEmpty(Mono.defer(() -> {
+			metrics.cacheMiss(resource);
+			return shared(resource, key);
+		}));
+	}
+
+	private Mono<OAuth2AccessToken> shared(OAuth2ProtectedResourceDetails resource, AccessTokenCacheKey key) {
+		return inFlight.computeIfAbsent(key,
+				k -> acquireAndCache(resource, key).doFinally(signal -> inFlight.remove(k)).cache());
+	}
+
+	private Mono<OAuth2AccessToken> acquireAndCache(OAuth2ProtectedResourceDetails resource,
+			AccessTokenCacheKey key) {
+		if (accessTokenCache == null) {
+			return Mono.defer(() -> acquire(resource));
+		}
+		// Another subscriber may have finished an acquisition since we last looked
+		return cached(key).switchIfEmpty(Mono.defer(() -> acquire(resource).flatMap(
+				accessToken -> offEventLoop(Mono.<Void>fromRunnable(() -> store(resource, key, accessToken)))
+						.thenReturn(accessToken))));
+	}
+
+	private Mono<OAuth2AccessToken> cached(AccessTokenCacheKey key) {
+		return offEventLoop(Mono.fromSupplier(() -> accessTokenCache.get(key)));
+	}
+
+	private <T> Mono<T> offEventLoop(Mono<T> call) {
+		return accessTokenCache.isBlocking() ? call.subscribeOn(Schedulers.boundedElastic()) : call;
+	}
+
+	private void store(OAuth2ProtectedResourceDetails resource, AccessTokenCacheKey key,
+			OAuth2AccessToken accessToken) {
+		accessTokenCache.put(key, accessToken);
+		if (accessTokenRefreshScheduler != null) {
+			accessTokenRefreshScheduler.schedule(key, accessToken, () -> refresh(resource, key));
+		}
+	}
+
+	private OAuth2AccessToken refresh(OAuth2ProtectedResourceDetails resource, AccessTokenCacheKey key) {
+		// Called on a scheduler thread (not an event loop), so it is safe to block
+		OAuth2AccessToken accessToken = acquire(resource).block(REFRESH_TIMEOUT);
+		accessTokenCache.put(key, accessToken);
+		return accessToken;
+	}
+
+	private Mono<OAuth2AccessToken> acquire(OAuth2ProtectedResourceDetails resource) {
+		MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+		form.add("grant_type", "client_credentials");
+		if (resource.isScoped()) {
+			form.add("scope", StringUtils.collectionToDelimitedString(resource.getScope(), " "));
+		}
+		WebClient.RequestBodySpec request = webClient.post().uri(resource.getAccessTokenUri())
+				.accept(MediaType.APPLICATION_JSON).contentType(MediaType.APPLICATION_FORM_URLENCODED);
+		if (resource.getClientAuthenticationScheme() == AuthenticationScheme.form) {
+			form.add("client_id", resource.getClientId());
+			if (StringUtils.hasText(resource.getClientSecret())) {
+				form.add("client_secret", resource.getClientSecret());
+			}
+		}
+		else {
+			request.headers(headers -> headers.setBasicAuth(formEncode(resource.getClientId()),
+					formEncode(resource.getClientSecret() != null ? resource.getClientSecret() : "")));
+		}
+		long[] start = new long[1];
+		return request.body(BodyInserters.fromFormData(form)).retrieve().bodyToMono(OAuth2AccessToken.class)
+				.switchIfEmpty(Mono.error(() -> new IllegalStateException(
+						"Token endpoint returned no token for resource '" + resource.getId() + "'.")))
+				.onErrorMap(WebClientResponseException.class,
+						e -> new OAuth2AccessDeniedException("Error requesting access token.", resource, e))
+				.doOnSubscribe(subscription -> start[0] = System.nanoTime())
+				.doOnSuccess(accessToken -> metrics.acquisition(resource, System.nanoTime() - start[0], null))
+				.doOnError(e -> metrics.acquisition(resource, System.nanoTime() - start[0], e));
+	}
+
+	public void setAccessTokenRefreshScheduler(AccessTokenRefreshScheduler accessTokenRefreshScheduler) {
+		this.accessTokenRefreshScheduler = accessTokenRefreshScheduler;
+	}
+
+	public void setMetrics(OAuth2ClientMetrics metrics) {
+		this.metrics = metrics != null ? metrics : OAuth2ClientMetrics.NONE;
+	}
+
+	// RFC 6749 section 2.3.1: the credentials are form encoded before they are Base64 encoded
+	private static String formEncode(String value) {
+		try {
+			return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 not available", e);
+		}
+	}
+
+}
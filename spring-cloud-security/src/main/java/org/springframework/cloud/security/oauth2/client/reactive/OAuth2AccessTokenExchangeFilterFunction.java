@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.reactive;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+/**
+ * {@link ExchangeFilterFunction} that adds a bearer token for a protected resource to
+ * every request made by a <code>WebClient</code>, e.g.
+ *
+ * <pre class="code">
+ * WebClient.builder().filter(new OAuth2AccessTokenExchangeFilterFunction(tokenSource, resource)).build();
+ * </pre>
+ */
+@Deprecated
+public class OAuth2AccessTokenExchangeFilterFunction implements ExchangeFilterFunction {
+
+	private final ReactiveAccessTokenSource accessTokenSource;
+
+	private final OAuth2ProtectedResourceDetails resource;
+
+	public OAuth2AccessTokenExchangeFilterFunction(ReactiveAccessTokenSource accessTokenSource,
+			OAuth2ProtectedResourceDetails resource) {
+		this.accessTokenSource = accessTokenSource;
+		this.resource = resource;
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		return accessTokenSource.getToken(resource)
+				.map(accessToken -> ClientRequest.from(request)
+						.headers(headers -> headers.setBearerAuth(accessToken.getValue())).build())
+				.flatMap(next::exchange);
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.reactive;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+/**
+ * Non-blocking counterpart of an <code>AccessTokenProvider</code>: supplies a valid
+ * token for a protected resource without blocking the calling thread.
+ */
+@Deprecated
+public interface ReactiveAccessTokenSource {
+
+	/**
+	 * @param resource the resource to get a token for
+	 * @return a valid token
+	 */
+	Mono<OAuth2AccessToken> getToken(OAuth2ProtectedResourceDetails resource);
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+/**
+ * Strategy for sharing access tokens between clients that access the same protected
+ * resource with the same credentials. Only tokens that are not bound to a user (e.g.
+ * <code>client_credentials</code>) should be stored in a cache like this, since the
+ * key does not take the current user into account.
+ *
+ * @see AccessTokenCacheKey
+ */
+@Deprecated
+public interface AccessTokenCache {
+
+	/**
+	 * Look up a token for the key.
+	 * @param key the key of the resource to look up a token for
+	 * @return a token that has not expired yet, or null if there is none
+	 */
+	OAuth2AccessToken get(AccessTokenCacheKey key);
+
+	/**
+	 * Store a freshly obtained token for the key.
+	 * @param key the key of the resource the token was obtained for
+	 * @param accessToken the token
+	 */
+	void put(AccessTokenCacheKey key, OAuth2AccessToken accessToken);
+
+	/**
+	 * Remove any token stored for the key.
+	 * @param key the key of the resource to remove the token for
+	 */
+	void evict(AccessTokenCacheKey key);
+
+	/**
+	 * Look up a token for the resource. Clients that look up tokens for the same resource
+	 * over and over should compute its key once and use {@link #get(AccessTokenCacheKey)}
+	 * instead.
+	 * @param resource the resource to look up a token for
+	 * @return a token that has not expired yet, or null if there is none
+	 */
+	default OAuth2AccessToken get(OAuth2ProtectedResourceDetails resource) {
+		return get(AccessTokenCacheKey.of(resource));
+	}
+
+	/**
+	 * Store a freshly obtained token for the resource.
+	 * @param resource the resource the token was obtained for
+	 * @param accessToken the token
+	 */
+	default void put(OAuth2ProtectedResourceDetails resource, OAuth2AccessToken accessToken) {
+		put(AccessTokenCacheKey.of(resource), accessToken);
+	}
+
+	/**
+	 * Remove any token stored for the resource.
+	 * @param resource the resource to remove the token for
+	 */
+	default void evict(OAuth2ProtectedResourceDetails resource) {
+		evict(AccessTokenCacheKey.of(resource));
+	}
+
+	/**
+	 * Whether the operations of the cache may block the calling thread (e.g. on network
+	 * I/O), in which case reactive clients do not call it on an event loop.
+	 * @return true unless the cache is known to answer from memory only
+	 */
+	default boolean isBlocking() {
+		return true;
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.common.AuthenticationScheme;
+
+/**
+ * Identifies a set of client credentials at an authorization server: the client id, a
+ * hash of the client secret, the way the client authenticates, the token endpoint, the
+ * grant type and the (order independent) scopes. Two
+ * {@link OAuth2ProtectedResourceDetails} with the same key can share their access
+ * tokens.
+ */
+@Deprecated
+public final class AccessTokenCacheKey {
+
+	private final String clientId;
+
+	private final String clientSecretHash;
+
+	private final AuthenticationScheme clientAuthenticationScheme;
+
+	private final String accessTokenUri;
+
+	private final String grantType;
+
+	private final List<String> scope;
+
+	private final int hashCode;
+
+	private AccessTokenCacheKey(String clientId, String clientSecretHash,
+			AuthenticationScheme clientAuthenticationScheme, String accessTokenUri, String grantType,
+			List<String> scope) {
+		this.clientId = clientId;
+		this.clientSecretHash = clientSecretHash;
+		this.clientAuthenticationScheme = clientAuthenticationScheme;
+		this.accessTokenUri = accessTokenUri;
+		this.grantType = grantType;
+		this.scope = scope;
+		this.hashCode = Objects.hash(clientId, clientSecretHash, clientAuthenticationScheme, accessTokenUri,
+				grantType, scope);
+	}
+
+	public static AccessTokenCacheKey of(OAuth2ProtectedResourceDetails resource) {
+		List<String> scope = resource.getScope() == null ? Collections.<String>emptyList()
+				: new ArrayList<>(resource.getScope());
+		Collections.sort(scope);
+		return new AccessTokenCacheKey(resource.getClientId(), hash(resource.getClientSecret()),
+				resource.getClientAuthenticationScheme(), resource.getAccessTokenUri(), resource.getGrantType(),
+				Collections.unmodifiableList(scope));
+	}
+
+	// Resources that only differ in their secret (e.g. while it is rotated) must not share
+	// tokens, but the key must not hold on to the secret itself
+	private static String hash(String clientSecret) {
+		if (clientSecret == null) {
+			return null;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return Base64.getUrlEncoder().withoutPadding()
+					.encodeToString(digest.digest(clientSecret.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	public String getClientId() {
+		return clientId;
+	}
+
+	public String getClientSecretHash() {
+		return clientSecretHash;
+	}
+
+	public AuthenticationScheme getClientAuthenticationScheme() {
+		return clientAuthenticationScheme;
+	}
+
+	public String getAccessTokenUri() {
+		return accessTokenUri;
+	}
+
+	public String getGrantType() {
+		return grantType;
+	}
+
+	public List<String> getScope() {
+		return scope;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		AccessTokenCacheKey other = (AccessTokenCacheKey) o;
+		return Objects.equals(clientId, other.clientId) && Objects.equals(clientSecretHash, other.clientSecretHash)
+				&& clientAuthenticationScheme == other.clientAuthenticationScheme
+				&& Objects.equals(accessTokenUri, other.accessTokenUri) && Objects.equals(grantType, other.grantType)
+				&& scope.equals(other.scope);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		return "AccessTokenCacheKey [clientId=" + clientId + ", clientAuthenticationScheme="
+				+ clientAuthenticationScheme + ", accessTokenUri=" + accessTokenUri + ", grantType=" + grantType
+				+ ", scope=" + scope + "]";
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.token.AccessTokenProvider;
+import org.springframework.security.oauth2.client.token.DefaultAccessTokenRequest;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.Assert;
+
+/**
+ * Obtains tokens for the <code>client_credentials</code> resources of the application
+ * while it starts, and puts them in the {@link AccessTokenCache}, so that the first calls
+ * to each downstream service do not pay for the acquisition. Runs before the application
+ * reports that it is ready to accept traffic. Resources that share credentials are only
+ * acquired once, all acquisitions run in parallel, and the ones that have not finished
+ * within the timeout are abandoned. Failures are logged and do not stop the application
+ * from starting: those tokens are acquired on first use instead.
+ * <p>
+ * Tokens are acquired the same way as on first use: with the shared
+ * {@link AccessTokenProviderDispatcher}, through the {@link CoalescingAccessTokenAcquirer}
+ * (if there is one), or through the acquisition of the client that uses the resource
+ * (see {@link #addAcquisition(OAuth2ProtectedResourceDetails, Supplier)}).
+ */
+@Deprecated
+public class AccessTokenPrewarmer implements ApplicationRunner {
+
+	private static final Log LOG = LogFactory.getLog(AccessTokenPrewarmer.class);
+
+	private static final int MAX_THREADS = 8;
+
+	private final AccessTokenCache accessTokenCache;
+
+	private final Collection<? extends OAuth2ProtectedResourceDetails> resources;
+
+	private final Map<AccessTokenCacheKey, Supplier<OAuth2AccessToken>> acquisitions = new LinkedHashMap<>();
+
+	private final Map<AccessTokenCacheKey, OAuth2ProtectedResourceDetails> acquisitionResources = new LinkedHashMap<>();
+
+	private AccessTokenProvider accessTokenProvider = AccessTokenProviderDispatcher.of(null);
+
+	private CoalescingAccessTokenAcquirer accessTokenAcquirer;
+
+	private AccessTokenRefreshScheduler accessTokenRefreshScheduler;
+
+	private OAuth2ClientMetrics metrics = OAuth2ClientMetrics.NONE;
+
+	private Duration timeout = Duration.ofSeconds(10);
+
+	public AccessTokenPrewarmer(AccessTokenCache accessTokenCache,
+			Collection<? extends OAuth2ProtectedResourceDetails> resources) {
+		this.accessTokenCache = accessTokenCache;
+		this.resources = resources;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws InterruptedException {
+		prewarm();
+	}
+
+	/**
+	 * Acquire the tokens that are not in the cache yet, waiting at most for the timeout.
+	 * @return the number of tokens acquired
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public int prewarm() throws InterruptedException {
+		Map<AccessTokenCacheKey, OAuth2ProtectedResourceDetails> pending = new LinkedHashMap<>();
+		Map<AccessTokenCacheKey, Callable<OAuth2AccessToken>> calls = new LinkedHashMap<>();
+		synchronized (this.acquisitions) {
+			this.acquisitionResources.forEach((key, resource) -> {
+				if (accessTokenCache.get(resource) == null) {
+					pending.put(key, resource);
+					calls.put(key, this.acquisitions.get(key)::get);
+				}
+			});
+		}
+		for (OAuth2ProtectedResourceDetails resource : resources) {
+			AccessTokenCacheKey key = AccessTokenCacheKey.of(resource);
+			if (resource instanceof ClientCredentialsResourceDetails && !pending.containsKey(key)
+					&& accessTokenCache.get(resource) == null) {
+				pending.put(key, resource);
+				calls.put(key, () -> acquireAndCache(resource));
+			}
+		}
+		if (pending.isEmpty()) {
+			return 0;
+		}
+		List<Callable<OAuth2AccessToken>> acquisitions = new ArrayList<>(calls.values());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(acquisitions.size(), MAX_THREADS),
+				new CustomizableThreadFactory("oauth2-token-prewarm-"));
+		try {
+			List<Future<OAuth2AccessToken>> results = executor.invokeAll(acquisitions, timeout.toMillis(),
+					TimeUnit.MILLISECONDS);
+			int acquired = 0;
+			int i = 0;
+			for (OAuth2ProtectedResourceDetails resource : pending.values()) {
+				try {
+					results.get(i++).get();
+					acquired++;
+				}
+				catch (CancellationException e) {
+					LOG.warn("Access token for resource '" + resource.getId() + "' not acquired within " + timeout);
+				}
+				catch (ExecutionException e) {
+					LOG.warn("Could not acquire access token for resource '" + resource.getId() + "'", e.getCause());
+				}
+			}
+			return acquired;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private OAuth2AccessToken acquireAndCache(OAuth2ProtectedResourceDetails resource) {
+		if (accessTokenAcquirer != null) {
+			// Shared with the clients that need the same token while the application starts
+			return accessTokenAcquirer.acquire(AccessTokenCacheKey.of(resource), () -> acquireIfMissing(resource));
+		}
+		return acquireIfMissing(resource);
+	}
+
+	private OAuth2AccessToken acquireIfMissing(OAuth2ProtectedResourceDetails resource) {
+		OAuth2AccessToken accessToken = accessTokenCache.get(resource);
+		if (accessToken != null) {
+			return accessToken;
+		}
+		accessToken = acquire(resource);
+		accessTokenCache.put(resource, accessToken);
+		if (accessTokenRefreshScheduler != null) {
+			accessTokenRefreshScheduler.schedule(AccessTokenCacheKey.of(resource), accessToken, () -> {
+				OAuth2AccessToken renewed = acquire(resource);
+				accessTokenCache.put(resource, renewed);
+				return renewed;
+			});
+		}
+		return accessToken;
+	}
+
+	private OAuth2AccessToken acquire(OAuth2ProtectedResourceDetails resource) {
+		long start = System.nanoTime();
+		try {
+			OAuth2AccessToken accessToken = accessTokenProvider.obtainAccessToken(resource,
+					new DefaultAccessTokenRequest());
+			if (accessToken == null || accessToken.getValue() == null) {
+				throw new IllegalStateException(
+						"Access token provider returned a null token, which is illegal according to the contract.");
+			}
+			metrics.acquisition(resource, System.nanoTime() - start, null);
+			return accessToken;
+		}
+		catch (RuntimeException e) {
+			metrics.acquisition(resource, System.nanoTime() - start, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Warm the token of a resource through the client that uses it (e.g. its Feign
+	 * interceptor) instead of acquiring it here, so that it is obtained, cached and
+	 * renewed exactly as on first use.
+	 * @param resource the resource of the client
+	 * @param acquisition obtains the token of the client and caches it
+	 */
+	public void addAcquisition(OAuth2ProtectedResourceDetails resource, Supplier<OAuth2AccessToken> acquisition) {
+		AccessTokenCacheKey key = AccessTokenCacheKey.of(resource);
+		synchronized (this.acquisitions) {
+			if (!this.acquisitions.containsKey(key)) {
+				this.acquisitions.put(key, acquisition);
+				this.acquisitionResources.put(key, resource);
+			}
+		}
+	}
+
+	public void setAccessTokenProvider(AccessTokenProvider accessTokenProvider) {
+		this.accessTokenProvider = accessTokenProvider;
+	}
+
+	/**
+	 * Share acquisitions with the clients that need the same token while the prewarmer
+	 * runs.
+	 * @param accessTokenAcquirer the acquirer of the clients, or null to acquire tokens
+	 * directly
+	 */
+	public void setAccessTokenAcquirer(CoalescingAccessTokenAcquirer accessTokenAcquirer) {
+		this.accessTokenAcquirer = accessTokenAcquirer;
+	}
+
+	/**
+	 * Renew the tokens acquired at startup in the background before they expire.
+	 * @param accessTokenRefreshScheduler the scheduler to use, or null to leave renewal
+	 * to the clients
+	 */
+	public void setAccessTokenRefreshScheduler(AccessTokenRefreshScheduler accessTokenRefreshScheduler) {
+		this.accessTokenRefreshScheduler = accessTokenRefreshScheduler;
+	}
+
+	/**
+	 * Record token acquisitions.
+	 * @param metrics the metrics to record to
+	 */
+	public void setMetrics(OAuth2ClientMetrics metrics) {
+		this.metrics = metrics != null ? metrics : OAuth2ClientMetrics.NONE;
+	}
+
+	/**
+	 * @param timeout how long to hold up startup at most (default 10 seconds)
+	 */
+	public void setTimeout(Duration timeout) {
+		Assert.notNull(timeout, "timeout must not be null");
+		this.timeout = timeout;
+	}
+
+}
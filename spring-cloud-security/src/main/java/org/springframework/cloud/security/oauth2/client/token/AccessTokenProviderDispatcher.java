@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.oauth2.client.resource.OAuth2AccessDeniedException;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.resource.UserRedirectRequiredException;
+import org.springframework.security.oauth2.client.token.AccessTokenProvider;
+import org.springframework.security.oauth2.client.token.AccessTokenProviderChain;
+import org.springframework.security.oauth2.client.token.AccessTokenRequest;
+import org.springframework.security.oauth2.client.token.OAuth2AccessTokenSupport;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsAccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.code.AuthorizationCodeAccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.implicit.ImplicitAccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.password.ResourceOwnerPasswordAccessTokenProvider;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.ConcurrentReferenceHashMap.ReferenceType;
+
+/**
+ * {@link AccessTokenProviderChain} that remembers which provider supports each kind of
+ * resource (its class and grant type), instead of asking every provider in turn for
+ * every token, so the providers must not decide on anything else. Providers (and the
+ * HTTP clients and message converters they hold) are thread safe, so a single dispatcher
+ * can be shared by all the clients in the process: {@link #of(ClientHttpRequestFactory)}
+ * returns the shared dispatcher of the default providers for a request factory.
+ */
+@Deprecated
+public class AccessTokenProviderDispatcher extends AccessTokenProviderChain {
+
+	private static final AccessTokenProviderDispatcher DEFAULT = defaultProviders(null);
+
+	private static final ConcurrentMap<ClientHttpRequestFactory, AccessTokenProviderDispatcher> SHARED;
+
+	static {
+		// Weak keys, so that the dispatchers of request factories that are gone are dropped
+		SHARED = new ConcurrentReferenceHashMap<>(16, ReferenceType.WEAK);
+	}
+
+	private final List<AccessTokenProvider> providers;
+
+	private final ConcurrentMap<ResourceType, AccessTokenProvider> dispatch = new ConcurrentHashMap<>();
+
+	public AccessTokenProviderDispatcher(List<? extends AccessTokenProvider> providers) {
+		super(providers);
+		this.providers = Collections.unmodifiableList(new ArrayList<>(providers));
+	}
+
+	/**
+	 * The dispatcher of the default chain of providers (authorization code, implicit,
+	 * password and client credentials) making their token requests through the request
+	 * factory provided. There is one per request factory, shared by all its callers.
+	 * @param requestFactory the request factory for the token requests, or null for the
+	 * default one of the providers
+	 * @return the shared dispatcher
+	 */
+	public static AccessTokenProviderDispatcher of(ClientHttpRequestFactory requestFactory) {
+		if (requestFactory == null) {
+			return DEFAULT;
+		}
+		return SHARED.computeIfAbsent(requestFactory, AccessTokenProviderDispatcher::defaultProviders);
+	}
+
+	private static AccessTokenProviderDispatcher defaultProviders(ClientHttpRequestFactory requestFactory) {
+		List<OAuth2AccessTokenSupport> providers = Arrays.asList(new AuthorizationCodeAccessTokenProvider(),
+				new ImplicitAccessTokenProvider(), new ResourceOwnerPasswordAccessTokenProvider(),
+				new ClientCredentialsAccessTokenProvider());
+		List<AccessTokenProvider> chain = new ArrayList<>();
+		for (OAuth2AccessTokenSupport provider : providers) {
+			if (requestFactory != null) {
+				provider.setRequestFactory(requestFactory);
+			}
+			chain.add((AccessTokenProvider) provider);
+		}
+		return new AccessTokenProviderDispatcher(chain);
+	}
+
+	@Override
+	public boolean supportsResource(OAuth2ProtectedResourceDetails resource) {
+		return provider(resource) != null;
+	}
+
+	@Override
+	protected OAuth2AccessToken obtainNewAccessTokenInternal(OAuth2ProtectedResourceDetails details,
+			AccessTokenRequest request) throws UserRedirectRequiredException, AccessDeniedException {
+		if (request.isError()) {
+			// there was an oauth error...
+			throw OAuth2Exception.valueOf(request.toSingleValueMap());
+		}
+		AccessTokenProvider provider = provider(details);
+		if (provider == null) {
+			throw new OAuth2AccessDeniedException("Unable to obtain a new access token for resource '"
+					+ details.getId() + "'. The provider manager is not configured to support it.", details);
+		}
+		return provider.obtainAccessToken(details, request);
+	}
+
+	private AccessTokenProvider provider(OAuth2ProtectedResourceDetails resource) {
+		ResourceType type = new ResourceType(resource);
+		AccessTokenProvider provider = dispatch.get(type);
+		if (provider == null) {
+			for (AccessTokenProvider candidate : providers) {
+				if (candidate.supportsResource(resource)) {
+					dispatch.putIfAbsent(type, candidate);
+					return candidate;
+				}
+			}
+		}
+		return provider;
+	}
+
+	/**
+	 * What the built-in providers decide whether they support a resource on.
+	 */
+	private static final class ResourceType {
+
+		private final Class<?> resourceClass;
+
+		private final String grantType;
+
+		ResourceType(OAuth2ProtectedResourceDetails resource) {
+			this.resourceClass = resource.getClass();
+			this.grantType = resource.getGrantType();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			ResourceType other = (ResourceType) o;
+			return resourceClass == other.resourceClass && Objects.equals(grantType, other.grantType);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(resourceClass, grantType);
+		}
+
+	}
+
+}
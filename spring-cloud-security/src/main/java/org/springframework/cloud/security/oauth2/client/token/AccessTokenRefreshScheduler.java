@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.Assert;
+
+/**
+ * Renews tokens in the background before they expire, so that callers always find a
+ * valid token in the {@link AccessTokenCache} instead of paying for the acquisition
+ * inline. A token is renewed once the configured fraction of its lifetime has elapsed,
+ * minus a random jitter so that tokens obtained at the same time are not all renewed at
+ * the same instant.
+ */
+@Deprecated
+public class AccessTokenRefreshScheduler implements DisposableBean {
+
+	private static final Log LOG = LogFactory.getLog(AccessTokenRefreshScheduler.class);
+
+	private static final long MIN_RETRY_MILLIS = 1000;
+
+	private final ConcurrentMap<Object, OAuth2AccessToken> scheduled = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService executor;
+
+	private double fraction = 0.8;
+
+	private Duration jitter = Duration.ofSeconds(5);
+
+	public AccessTokenRefreshScheduler(int threads) {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads,
+				new CustomizableThreadFactory("oauth2-token-refresh-"));
+		executor.setRemoveOnCancelPolicy(true);
+		this.executor = executor;
+	}
+
+	/**
+	 * Arrange for the token to be renewed before it expires. Scheduling the token that is
+	 * already scheduled for the key is a no-op, and scheduling a new one supersedes the
+	 * old one.
+	 * @param key identifies the token (e.g. an {@link AccessTokenCacheKey})
+	 * @param accessToken the token that was just obtained
+	 * @param refresh obtains a new token and stores it wherever callers look for it. It
+	 * is called from a scheduler thread, so it cannot rely on request scoped state.
+	 */
+	public void schedule(Object key, OAuth2AccessToken accessToken, Supplier<OAuth2AccessToken> refresh) {
+		if (accessToken.getExpiration() == null || accessToken.getExpiresIn() <= 0) {
+			return;
+		}
+		if (scheduled.put(key, accessToken) == accessToken) {
+			return;
+		}
+		long lifetime = TimeUnit.SECONDS.toMillis(accessToken.getExpiresIn());
+		long delay = (long) (lifetime * fraction);
+		long maxJitter = Math.min(jitter.toMillis(), delay);
+		if (maxJitter > 0) {
+			delay -= ThreadLocalRandom.current().nextLong(maxJitter);
+		}
+		submit(key, accessToken, refresh, delay);
+	}
+
+	private void submit(Object key, OAuth2AccessToken accessToken, Supplier<OAuth2AccessToken> refresh, long delay) {
+		executor.schedule(() -> refresh(key, accessToken, refresh), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void refresh(Object key, OAuth2AccessToken accessToken, Supplier<OAuth2AccessToken> refresh) {
+		if (scheduled.get(key) != accessToken) {
+			// Superseded by a token that was obtained some other way
+			return;
+		}
+		try {
+			schedule(key, refresh.get(), refresh);
+		}
+		catch (RuntimeException e) {
+			long remaining = accessToken.getExpiration().getTime() - System.currentTimeMillis();
+			if (remaining / 2 >= MIN_RETRY_MILLIS) {
+				LOG.warn("Could not renew access token for " + key + ", will retry in " + remaining / 2 + "ms", e);
+				submit(key, accessToken, refresh, remaining / 2);
+			}
+			else {
+				LOG.warn("Could not renew access token for " + key + " before it expires", e);
+				scheduled.remove(key, accessToken);
+			}
+		}
+	}
+
+	/**
+	 * @param fraction the fraction of a token's lifetime after which it is renewed
+	 * (default 0.8)
+	 */
+	public void setFraction(double fraction) {
+		Assert.isTrue(fraction > 0 && fraction < 1, "fraction must be between 0 and 1");
+		this.fraction = fraction;
+	}
+
+	/**
+	 * @param jitter the maximum random amount of time by which renewals are brought
+	 * forward (default 5 seconds)
+	 */
+	public void setJitter(Duration jitter) {
+		Assert.notNull(jitter, "jitter must not be null");
+		this.jitter = jitter;
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.Assert;
+
+/**
+ * Makes sure that there is at most one token acquisition in flight per key. The first
+ * caller for a key performs the acquisition and every caller that arrives while it is
+ * still running waits (for a bounded time) and then shares its result, or its exception.
+ * This class holds no monitor while the acquisition runs or while waiting for it:
+ * waiting callers park on a {@link CompletableFuture}, so virtual threads waiting for
+ * another caller's acquisition do not pin their carrier threads. The HTTP client making
+ * the token request may still hold monitors of its own, e.g. the JDK's
+ * <code>HttpURLConnection</code> (the default for token requests) synchronizes while it
+ * reads the response up to JDK 17.
+ */
+@Deprecated
+public class CoalescingAccessTokenAcquirer {
+
+	private final ConcurrentMap<Object, CompletableFuture<OAuth2AccessToken>> inFlight = new ConcurrentHashMap<>();
+
+	private Duration timeout = Duration.ofSeconds(10);
+
+	/**
+	 * Acquire a token, or join an acquisition with the same key that is already running.
+	 * @param key identifies the token (e.g. an {@link AccessTokenCacheKey})
+	 * @param acquisition performs the actual acquisition
+	 * @return the token
+	 * @throws IllegalStateException if the wait for another caller's acquisition times
+	 * out or is interrupted
+	 */
+	public OAuth2AccessToken acquire(Object key, Supplier<OAuth2AccessToken> acquisition) {
+		CompletableFuture<OAuth2AccessToken> flight = new CompletableFuture<>();
+		CompletableFuture<OAuth2AccessToken> existing = inFlight.putIfAbsent(key, flight);
+		if (existing != null) {
+			return await(key, existing);
+		}
+		try {
+			OAuth2AccessToken accessToken = acquisition.get();
+			flight.complete(accessToken);
+			return accessToken;
+		}
+		catch (RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			inFlight.remove(key, flight);
+		}
+	}
+
+	private OAuth2AccessToken await(Object key, CompletableFuture<OAuth2AccessToken> flight) {
+		try {
+			return flight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Access token acquisition failed for " + key, cause);
+		}
+		catch (TimeoutException e) {
+			throw new IllegalStateException("Timed out after " + timeout + " waiting for access token for " + key);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for access token for " + key, e);
+		}
+	}
+
+	/**
+	 * @param timeout the maximum time to wait for an acquisition started by another
+	 * caller (default 10 seconds)
+	 */
+	public void setTimeout(Duration timeout) {
+		Assert.notNull(timeout, "timeout must not be null");
+		this.timeout = timeout;
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+/**
+ * {@link AccessTokenCache} that keeps tokens in memory, keyed by
+ * {@link AccessTokenCacheKey}. Expired tokens are dropped when they are looked up. A
+ * single instance is meant to be shared by all the clients in the process.
+ */
+@Deprecated
+public class InMemoryAccessTokenCache implements AccessTokenCache {
+
+	private final ConcurrentMap<AccessTokenCacheKey, OAuth2AccessToken> tokens = new ConcurrentHashMap<>();
+
+	@Override
+	public OAuth2AccessToken get(AccessTokenCacheKey key) {
+		OAuth2AccessToken accessToken = tokens.get(key);
+		if (accessToken != null && accessToken.isExpired()) {
+			tokens.remove(key, accessToken);
+			return null;
+		}
+		return accessToken;
+	}
+
+	@Override
+	public void put(AccessTokenCacheKey key, OAuth2AccessToken accessToken) {
+		tokens.put(key, accessToken);
+	}
+
+	@Override
+	public void evict(AccessTokenCacheKey key) {
+		tokens.remove(key);
+	}
+
+	@Override
+	public boolean isBlocking() {
+		return false;
+	}
+
+	/**
+	 * @return the number of tokens currently held (including expired ones that have not
+	 * been looked up since they expired)
+	 */
+	public int size() {
+		return tokens.size();
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.Assert;
+
+/**
+ * {@link AccessTokenCache} that keeps the tokens of a shared (remote) cache in memory as
+ * well, so that most lookups do not leave the process. Local copies are kept until the
+ * token expires or for the time to live, whichever comes first, which bounds how long an
+ * eviction in another process goes unnoticed. Failures of the shared cache are logged and
+ * treated as misses, so that clients can still acquire their own tokens while it is
+ * unavailable.
+ */
+@Deprecated
+public class NearAccessTokenCache implements AccessTokenCache {
+
+	private static final Log LOG = LogFactory.getLog(NearAccessTokenCache.class);
+
+	private final ConcurrentMap<AccessTokenCacheKey, NearToken> tokens = new ConcurrentHashMap<>();
+
+	private final AccessTokenCache sharedCache;
+
+	private Duration timeToLive = Duration.ofMinutes(1);
+
+	public NearAccessTokenCache(AccessTokenCache sharedCache) {
+		this.sharedCache = sharedCache;
+	}
+
+	@Override
+	public OAuth2AccessToken get(AccessTokenCacheKey key) {
+		NearToken nearToken = tokens.get(key);
+		if (nearToken != null) {
+			if (nearToken.isValid()) {
+				return nearToken.accessToken;
+			}
+			tokens.remove(key, nearToken);
+		}
+		OAuth2AccessToken accessToken;
+		try {
+			accessToken = sharedCache.get(key);
+		}
+		catch (RuntimeException e) {
+			LOG.warn("Could not look up access token in shared cache", e);
+			return null;
+		}
+		if (accessToken != null) {
+			tokens.put(key, new NearToken(accessToken));
+		}
+		return accessToken;
+	}
+
+	@Override
+	public void put(AccessTokenCacheKey key, OAuth2AccessToken accessToken) {
+		tokens.put(key, new NearToken(accessToken));
+		try {
+			sharedCache.put(key, accessToken);
+		}
+		catch (RuntimeException e) {
+			LOG.warn("Could not store access token in shared cache", e);
+		}
+	}
+
+	@Override
+	public void evict(AccessTokenCacheKey key) {
+		tokens.remove(key);
+		sharedCache.evict(key);
+	}
+
+	/**
+	 * @param timeToLive the maximum time to keep a local copy of a token (default 1
+	 * minute)
+	 */
+	public void setTimeToLive(Duration timeToLive) {
+		Assert.notNull(timeToLive, "timeToLive must not be null");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * @return the number of tokens currently held locally
+	 */
+	public int size() {
+		return tokens.size();
+	}
+
+	private final class NearToken {
+
+		private final OAuth2AccessToken accessToken;
+
+		private final long storedAt = System.nanoTime();
+
+		NearToken(OAuth2AccessToken accessToken) {
+			this.accessToken = accessToken;
+		}
+
+		boolean isValid() {
+			return !accessToken.isExpired() && System.nanoTime() - storedAt < timeToLive.toNanos();
+		}
+
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.util.stream.Collectors;
+
+import feign.RequestInterceptor;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.security.oauth2.client.feign.OAuth2FeignRequestInterceptorPostProcessor;
+import org.springframework.cloud.security.oauth2.client.http.OAuth2HttpClientAutoConfiguration;
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.cloud.security.oauth2.client.reactive.ClientCredentialsReactiveAccessTokenSource;
+import org.springframework.cloud.security.oauth2.client.reactive.ReactiveAccessTokenSource;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Provides the process-wide infrastructure shared by OAuth2 clients that obtain their
+ * own tokens (e.g. an <code>OAuth2FeignRequestInterceptor</code> with
+ * <code>client_credentials</code>), so that clients with the same credentials do not
+ * each go to the authorization server.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(OAuth2ProtectedResourceDetails.class)
+@AutoConfigureAfter(value = OAuth2HttpClientAutoConfiguration.class,
+		name = "org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration")
+@EnableConfigurationProperties(OAuth2ClientTokenProperties.class)
+@Deprecated
+public class OAuth2ClientTokenAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public AccessTokenCache accessTokenCache() {
+		return new InMemoryAccessTokenCache();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public AccessTokenProviderDispatcher accessTokenProviderDispatcher() {
+		return AccessTokenProviderDispatcher.of(null);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public CoalescingAccessTokenAcquirer coalescingAccessTokenAcquirer(OAuth2ClientTokenProperties properties) {
+		CoalescingAccessTokenAcquirer acquirer = new CoalescingAccessTokenAcquirer();
+		acquirer.setTimeout(properties.getAcquireTimeout());
+		return acquirer;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty("spring.cloud.security.oauth2.client.token.refresh-ahead.enabled")
+	public AccessTokenRefreshScheduler accessTokenRefreshScheduler(OAuth2ClientTokenProperties properties) {
+		OAuth2ClientTokenProperties.RefreshAhead refreshAhead = properties.getRefreshAhead();
+		AccessTokenRefreshScheduler scheduler = new AccessTokenRefreshScheduler(refreshAhead.getThreads());
+		scheduler.setFraction(refreshAhead.getFraction());
+		scheduler.setJitter(refreshAhead.getJitter());
+		return scheduler;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty("spring.cloud.security.oauth2.client.token.stale-fallback.enabled")
+	public StaleAccessTokenFallback staleAccessTokenFallback(OAuth2ClientTokenProperties properties) {
+		OAuth2ClientTokenProperties.StaleFallback staleFallback = properties.getStaleFallback();
+		StaleAccessTokenFallback fallback = new StaleAccessTokenFallback();
+		fallback.setGracePeriod(staleFallback.getGracePeriod());
+		fallback.setFailureThreshold(staleFallback.getFailureThreshold());
+		fallback.setOpenDuration(staleFallback.getOpenDuration());
+		return fallback;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty("spring.cloud.security.oauth2.client.token.prewarm.enabled")
+	public AccessTokenPrewarmer accessTokenPrewarmer(AccessTokenCache accessTokenCache,
+			AccessTokenProviderDispatcher accessTokenProviderDispatcher,
+			ObjectProvider<OAuth2ProtectedResourceDetails> resources,
+			ObjectProvider<CoalescingAccessTokenAcquirer> accessTokenAcquirer,
+			ObjectProvider<AccessTokenRefreshScheduler> accessTokenRefreshScheduler,
+			ObjectProvider<OAuth2ClientMetrics> metrics, OAuth2ClientTokenProperties properties) {
+		AccessTokenPrewarmer prewarmer = new AccessTokenPrewarmer(accessTokenCache,
+				resources.orderedStream().collect(Collectors.toList()));
+		prewarmer.setAccessTokenProvider(accessTokenProviderDispatcher);
+		prewarmer.setAccessTokenAcquirer(accessTokenAcquirer.getIfAvailable());
+		prewarmer.setAccessTokenRefreshScheduler(accessTokenRefreshScheduler.getIfAvailable());
+		prewarmer.setMetrics(metrics.getIfAvailable());
+		prewarmer.setTimeout(properties.getPrewarm().getTimeout());
+		return prewarmer;
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(RequestInterceptor.class)
+	protected static class FeignRequestInterceptorConfiguration {
+
+		@Bean
+		public static OAuth2FeignRequestInterceptorPostProcessor oauth2FeignRequestInterceptorPostProcessor(
+				ObjectProvider<AccessTokenProviderDispatcher> accessTokenProviderDispatcher,
+				ObjectProvider<AccessTokenCache> accessTokenCache,
+				ObjectProvider<CoalescingAccessTokenAcquirer> accessTokenAcquirer,
+				ObjectProvider<AccessTokenRefreshScheduler> accessTokenRefreshScheduler,
+				ObjectProvider<StaleAccessTokenFallback> staleAccessTokenFallback,
+				ObjectProvider<OAuth2ClientMetrics> metrics) {
+			OAuth2FeignRequestInterceptorPostProcessor postProcessor = new OAuth2FeignRequestInterceptorPostProcessor(
+					accessTokenProviderDispatcher);
+			postProcessor.setAccessTokenCache(accessTokenCache);
+			postProcessor.setAccessTokenAcquirer(accessTokenAcquirer);
+			postProcessor.setAccessTokenRefreshScheduler(accessTokenRefreshScheduler);
+			postProcessor.setStaleAccessTokenFallback(staleAccessTokenFallback);
+			postProcessor.setMetrics(metrics);
+			return postProcessor;
+		}
+
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(StringRedisTemplate.class)
+	@ConditionalOnBean(RedisConnectionFactory.class)
+	@ConditionalOnProperty(prefix = "spring.cloud.security.oauth2.client.token.cache", name = "type",
+			havingValue = "redis")
+	protected static class RedisAccessTokenCacheConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public AccessTokenCache redisAccessTokenCache(RedisConnectionFactory connectionFactory,
+				OAuth2ClientTokenProperties properties) {
+			RedisAccessTokenCache sharedCache = new RedisAccessTokenCache(new StringRedisTemplate(connectionFactory));
+			sharedCache.setKeyPrefix(properties.getCache().getKeyPrefix());
+			NearAccessTokenCache cache = new NearAccessTokenCache(sharedCache);
+			cache.setTimeToLive(properties.getCache().getNearTimeToLive());
+			return cache;
+		}
+
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(WebClient.class)
+	protected static class ReactiveAccessTokenSourceConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public ReactiveAccessTokenSource reactiveAccessTokenSource(ObjectProvider<WebClient.Builder> webClientBuilder,
+				AccessTokenCache accessTokenCache,
+				ObjectProvider<AccessTokenRefreshScheduler> accessTokenRefreshScheduler,
+				ObjectProvider<OAuth2ClientMetrics> metrics) {
+			WebClient webClient = webClientBuilder.getIfAvailable(WebClient::builder).build();
+			ClientCredentialsReactiveAccessTokenSource source = new ClientCredentialsReactiveAccessTokenSource(
+					webClient, accessTokenCache);
+			source.setAccessTokenRefreshScheduler(accessTokenRefreshScheduler.getIfAvailable());
+			source.setMetrics(metrics.getIfAvailable());
+			return source;
+		}
+
+	}
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration for the shared handling of client access tokens.
+ */
+@ConfigurationProperties("spring.cloud.security.oauth2.client.token")
+@Deprecated
+public class OAuth2ClientTokenProperties {
+
+	/**
+	 * Maximum time to wait for a token acquisition that was started by another thread.
+	 */
+	private Duration acquireTimeout = Duration.ofSeconds(10);
+
+	private final Cache cache = new Cache();
+
+	private final RefreshAhead refreshAhead = new RefreshAhead();
+
+	private final StaleFallback staleFallback = new StaleFallback();
+
+	private final Prewarm prewarm = new Prewarm();
+
+	public Duration getAcquireTimeout() {
+		return acquireTimeout;
+	}
+
+	public void setAcquireTimeout(Duration acquireTimeout) {
+		this.acquireTimeout = acquireTimeout;
+	}
+
+	public Cache getCache() {
+		return cache;
+	}
+
+	public RefreshAhead getRefreshAhead() {
+		return refreshAhead;
+	}
+
+	public StaleFallback getStaleFallback() {
+		return staleFallback;
+	}
+
+	public Prewarm getPrewarm() {
+		return prewarm;
+	}
+
+	public static class Cache {
+
+		/**
+		 * Where client credentials tokens are shared.
+		 */
+		private Type type = Type.MEMORY;
+
+		/**
+		 * Prefix of the keys tokens are stored under in Redis.
+		 */
+		private String keyPrefix = RedisAccessTokenCache.DEFAULT_KEY_PREFIX;
+
+		/**
+		 * Maximum time to keep a local copy of a token from Redis.
+		 */
+		private Duration nearTimeToLive = Duration.ofMinutes(1);
+
+		public Type getType() {
+			return type;
+		}
+
+		public void setType(Type type) {
+			this.type = type;
+		}
+
+		public String getKeyPrefix() {
+			return keyPrefix;
+		}
+
+		public void setKeyPrefix(String keyPrefix) {
+			this.keyPrefix = keyPrefix;
+		}
+
+		public Duration getNearTimeToLive() {
+			return nearTimeToLive;
+		}
+
+		public void setNearTimeToLive(Duration nearTimeToLive) {
+			this.nearTimeToLive = nearTimeToLive;
+		}
+
+		/**
+		 * Where tokens are shared.
+		 */
+		public enum Type {
+
+			/**
+			 * Between the clients of this process.
+			 */
+			MEMORY,
+
+			/**
+			 * Between all the processes using the same Redis.
+			 */
+			REDIS
+
+		}
+
+	}
+
+	public static class RefreshAhead {
+
+		/**
+		 * Whether to renew client credentials tokens in the background before they
+		 * expire.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Fraction of a token's lifetime after which it is renewed.
+		 */
+		private double fraction = 0.8;
+
+		/**
+		 * Maximum random amount of time by which a renewal is brought forward, so that
+		 * tokens obtained together are not renewed together.
+		 */
+		private Duration jitter = Duration.ofSeconds(5);
+
+		/**
+		 * Number of threads renewing tokens.
+		 */
+		private int threads = 1;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public double getFraction() {
+			return fraction;
+		}
+
+		public void setFraction(double fraction) {
+			this.fraction = fraction;
+		}
+
+		public Duration getJitter() {
+			return jitter;
+		}
+
+		public void setJitter(Duration jitter) {
+			this.jitter = jitter;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+	}
+
+	public static class StaleFallback {
+
+		/**
+		 * Whether to keep using the last client credentials token after it has expired
+		 * while no new one can be acquired.
+		 */
+		private boolean enabled;
+
+		/**
+		 * How long after its expiry the last token may still be used.
+		 */
+		private Duration gracePeriod = Duration.ofMinutes(5);
+
+		/**
+		 * Number of consecutive failed acquisitions after which no more are attempted
+		 * on the request path.
+		 */
+		private int failureThreshold = 3;
+
+		/**
+		 * Time between background acquisition attempts once the failure threshold has
+		 * been reached.
+		 */
+		private Duration openDuration = Duration.ofSeconds(30);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getGracePeriod() {
+			return gracePeriod;
+		}
+
+		public void setGracePeriod(Duration gracePeriod) {
+			this.gracePeriod = gracePeriod;
+		}
+
+		public int getFailureThreshold() {
+			return failureThreshold;
+		}
+
+		public void setFailureThreshold(int failureThreshold) {
+			this.failureThreshold = failureThreshold;
+		}
+
+		public Duration getOpenDuration() {
+			return openDuration;
+		}
+
+		public void setOpenDuration(Duration openDuration) {
+			this.openDuration = openDuration;
+		}
+
+	}
+
+	public static class Prewarm {
+
+		/**
+		 * Whether to acquire tokens for all client credentials resources while the
+		 * application starts.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Maximum time to hold up startup for.
+		 */
+		private Duration timeout = Duration.ofSeconds(10);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+
+	}
+
+}
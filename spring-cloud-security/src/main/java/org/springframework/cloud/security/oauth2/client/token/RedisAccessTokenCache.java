@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link AccessTokenCache} that keeps tokens in Redis, so that all the instances of an
+ * application share them. Entries expire in Redis when the token does. The key is a hash
+ * of the {@link AccessTokenCacheKey}, so no credentials are stored in the key space.
+ * Usually wrapped in a {@link NearAccessTokenCache} to avoid a round trip per request.
+ */
+@Deprecated
+public class RedisAccessTokenCache implements AccessTokenCache {
+
+	/**
+	 * The default prefix of the keys tokens are stored under.
+	 */
+	public static final String DEFAULT_KEY_PREFIX = "spring:cloud:security:oauth2:token:";
+
+	private static final String SEPARATOR = "\n";
+
+	private final RedisOperations<String, String> redisOperations;
+
+	private String keyPrefix = DEFAULT_KEY_PREFIX;
+
+	public RedisAccessTokenCache(RedisOperations<String, String> redisOperations) {
+		this.redisOperations = redisOperations;
+	}
+
+	@Override
+	public OAuth2AccessToken get(AccessTokenCacheKey key) {
+		String value = redisOperations.opsForValue().get(redisKey(key));
+		if (value == null) {
+			return null;
+		}
+		OAuth2AccessToken accessToken = decode(value);
+		return accessToken.isExpired() ? null : accessToken;
+	}
+
+	@Override
+	public void put(AccessTokenCacheKey key, OAuth2AccessToken accessToken) {
+		Date expiration = accessToken.getExpiration();
+		if (expiration == null) {
+			redisOperations.opsForValue().set(redisKey(key), encode(accessToken));
+			return;
+		}
+		long timeToLive = expiration.getTime() - System.currentTimeMillis();
+		if (timeToLive > 0) {
+			redisOperations.opsForValue().set(redisKey(key), encode(accessToken), timeToLive,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public void evict(AccessTokenCacheKey key) {
+		redisOperations.delete(redisKey(key));
+	}
+
+	/**
+	 * @param keyPrefix the prefix of the keys tokens are stored under (default
+	 * {@value #DEFAULT_KEY_PREFIX})
+	 */
+	public void setKeyPrefix(String keyPrefix) {
+		Assert.notNull(keyPrefix, "keyPrefix must not be null");
+		this.keyPrefix = keyPrefix;
+	}
+
+	String redisKey(AccessTokenCacheKey key) {
+		String identity = key.getClientId() + SEPARATOR + key.getClientSecretHash() + SEPARATOR
+				+ key.getClientAuthenticationScheme() + SEPARATOR + key.getAccessTokenUri() + SEPARATOR
+				+ key.getGrantType() + SEPARATOR + StringUtils.collectionToDelimitedString(key.getScope(), " ");
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return keyPrefix + Base64.getUrlEncoder().withoutPadding()
+					.encodeToString(digest.digest(identity.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	// Neither token types, scopes nor token values can contain line breaks, and the value
+	// comes last in case it contains anything else unexpected. A missing token type is
+	// stored as an empty field and read back as the default (bearer).
+	static String encode(OAuth2AccessToken accessToken) {
+		Date expiration = accessToken.getExpiration();
+		String tokenType = accessToken.getTokenType();
+		return (expiration != null ? String.valueOf(expiration.getTime()) : "") + SEPARATOR
+				+ (tokenType != null ? tokenType : "") + SEPARATOR
+				+ StringUtils.collectionToDelimitedString(accessToken.getScope(), " ") + SEPARATOR
+				+ accessToken.getValue();
+	}
+
+	static OAuth2AccessToken decode(String value) {
+		String[] fields = value.split(SEPARATOR, 4);
+		if (fields.length != 4) {
+			throw new IllegalStateException("Not a cached access token");
+		}
+		DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken(fields[3]);
+		if (!fields[0].isEmpty()) {
+			accessToken.setExpiration(new Date(Long.parseLong(fields[0])));
+		}
+		if (!fields[1].isEmpty()) {
+			accessToken.setTokenType(fields[1]);
+		}
+		if (!fields[2].isEmpty()) {
+			accessToken.setScope(new LinkedHashSet<>(Arrays.asList(fields[2].split(" "))));
+		}
+		return accessToken;
+	}
+
+}
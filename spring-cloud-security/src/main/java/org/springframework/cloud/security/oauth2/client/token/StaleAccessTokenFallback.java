@@ -0,0 +1,217 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.util.Assert;
+
+/**
+ * Keeps callers going while the authorization server is slow or unavailable. The last
+ * token obtained for a key is remembered and, for a grace period after it has expired
+ * (downstream services often accept a token for a while after its expiry), it is served
+ * right away while a new one is acquired in the background. Only callers without such a
+ * token wait for an acquisition. After a number of consecutive failures the circuit
+ * opens: no more acquisitions are attempted on the request path, callers get the stale
+ * token (or fail fast once it is too old), and a single background attempt is made every
+ * open duration until one succeeds and closes the circuit again.
+ * <p>
+ * There is at most one background acquisition per key, on a small pool of threads. When
+ * callers share acquisitions (e.g. through a {@link CoalescingAccessTokenAcquirer}) the
+ * fallback should be called by the one that performs the acquisition, so that a failure
+ * is counted once and not once per caller.
+ */
+@Deprecated
+public class StaleAccessTokenFallback implements DisposableBean {
+
+	private static final Log LOG = LogFactory.getLog(StaleAccessTokenFallback.class);
+
+	private final ConcurrentMap<Object, Entry> entries = new ConcurrentHashMap<>();
+
+	private static final int MAX_THREADS = 4;
+
+	private static final int MAX_PENDING = 100;
+
+	private final ThreadPoolExecutor executor;
+
+	private Duration gracePeriod = Duration.ofMinutes(5);
+
+	private int failureThreshold = 3;
+
+	private Duration openDuration = Duration.ofSeconds(30);
+
+	public StaleAccessTokenFallback() {
+		this.executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(MAX_PENDING), new CustomizableThreadFactory("oauth2-token-revalidate-"));
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Acquire a token, or fall back to the last one: right away while it is within its
+	 * grace period, or if the acquisition fails.
+	 * @param key identifies the token (e.g. an {@link AccessTokenCacheKey})
+	 * @param acquisition acquires a token on the calling thread
+	 * @param revalidation acquires a token in the background, so it cannot rely on
+	 * request scoped state
+	 * @return the token
+	 * @throws IllegalStateException if the circuit is open and there is no token that is
+	 * still within its grace period
+	 */
+	public OAuth2AccessToken acquire(Object key, Supplier<OAuth2AccessToken> acquisition,
+			Supplier<OAuth2AccessToken> revalidation) {
+		Entry entry = entries.computeIfAbsent(key, (k) -> new Entry());
+		OAuth2AccessToken last = entry.last;
+		if (last != null && !last.isExpired()) {
+			return last;
+		}
+		OAuth2AccessToken stale = entry.stale();
+		if (stale != null) {
+			revalidate(key, entry, revalidation);
+			return stale;
+		}
+		if (entry.isOpen()) {
+			revalidate(key, entry, revalidation);
+			throw new IllegalStateException("Not requesting access token for " + key + " after " + entry.failures.get()
+					+ " consecutive failures, and there is no recent token to use instead");
+		}
+		try {
+			OAuth2AccessToken accessToken = acquisition.get();
+			entry.succeeded(accessToken);
+			return accessToken;
+		}
+		catch (RuntimeException e) {
+			entry.failed();
+			// Another caller may have obtained a token in the meantime
+			stale = entry.stale();
+			if (stale == null) {
+				throw e;
+			}
+			LOG.warn("Could not acquire access token for " + key + ", using the expired one", e);
+			return stale;
+		}
+	}
+
+	private void revalidate(Object key, Entry entry, Supplier<OAuth2AccessToken> revalidation) {
+		if ((entry.isOpen() && System.nanoTime() - entry.openedAt < openDuration.toNanos())
+				|| !entry.revalidating.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					entry.succeeded(revalidation.get());
+				}
+				catch (RuntimeException e) {
+					LOG.warn("Could not acquire access token for " + key + " in the background", e);
+					entry.failed();
+				}
+				finally {
+					entry.revalidating.set(false);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			// Tried again by the next caller
+			entry.revalidating.set(false);
+		}
+	}
+
+	/**
+	 * @param gracePeriod how long after its expiry a token may be used when no new one
+	 * can be acquired (default 5 minutes)
+	 */
+	public void setGracePeriod(Duration gracePeriod) {
+		Assert.notNull(gracePeriod, "gracePeriod must not be null");
+		this.gracePeriod = gracePeriod;
+	}
+
+	/**
+	 * @param failureThreshold the number of consecutive failures after which the circuit
+	 * opens (default 3)
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		Assert.isTrue(failureThreshold > 0, "failureThreshold must be positive");
+		this.failureThreshold = failureThreshold;
+	}
+
+	/**
+	 * @param openDuration the time between acquisition attempts while the circuit is open
+	 * (default 30 seconds)
+	 */
+	public void setOpenDuration(Duration openDuration) {
+		Assert.notNull(openDuration, "openDuration must not be null");
+		this.openDuration = openDuration;
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	private final class Entry {
+
+		private final AtomicInteger failures = new AtomicInteger();
+
+		private final AtomicBoolean revalidating = new AtomicBoolean();
+
+		private volatile OAuth2AccessToken last;
+
+		private volatile long openedAt;
+
+		boolean isOpen() {
+			return failures.get() >= failureThreshold;
+		}
+
+		void succeeded(OAuth2AccessToken accessToken) {
+			last = accessToken;
+			failures.set(0);
+		}
+
+		void failed() {
+			if (failures.incrementAndGet() >= failureThreshold) {
+				// (Re)start the wait for the next background attempt
+				openedAt = System.nanoTime();
+			}
+		}
+
+		OAuth2AccessToken stale() {
+			OAuth2AccessToken accessToken = last;
+			if (accessToken == null || accessToken.getExpiration() == null) {
+				return null;
+			}
+			return accessToken.getExpiration().getTime() + gracePeriod.toMillis() > System.currentTimeMillis()
+					? accessToken : null;
+		}
+
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.userinfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+/**
+ * A fully read {@link ClientHttpResponse} that can be handed out any number of times.
+ */
+@Deprecated
+final class BufferedResponse {
+
+	private final int statusCode;
+
+	private final String statusText;
+
+	private final HttpHeaders headers;
+
+	private final byte[] body;
+
+	private BufferedResponse(int statusCode, String statusText, HttpHeaders headers, byte[] body) {
+		this.statusCode = statusCode;
+		this.statusText = statusText;
+		this.headers = headers;
+		this.body = body;
+	}
+
+	/**
+	 * Read and close a response.
+	 * @param response the response to read
+	 * @return the buffered response
+	 * @throws IOException if the response cannot be read
+	 */
+	static BufferedResponse of(ClientHttpResponse response) throws IOException {
+		try {
+			HttpHeaders headers = new HttpHeaders();
+			headers.putAll(response.getHeaders());
+			return new BufferedResponse(response.getRawStatusCode(), response.getStatusText(),
+					HttpHeaders.readOnlyHttpHeaders(headers), StreamUtils.copyToByteArray(response.getBody()));
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	ClientHttpResponse response() {
+		return new ClientHttpResponse() {
+
+			@Override
+			public HttpStatus getStatusCode() {
+				return HttpStatus.valueOf(statusCode);
+			}
+
+			@Override
+			public int getRawStatusCode() {
+				return statusCode;
+			}
+
+			@Override
+			public String getStatusText() {
+				return statusText;
+			}
+
+			@Override
+			public HttpHeaders getHeaders() {
+				return headers;
+			}
+
+			@Override
+			public InputStream getBody() {
+				return new ByteArrayInputStream(body);
+			}
+
+			@Override
+			public void close() {
+			}
+
+		};
+	}
+
+}
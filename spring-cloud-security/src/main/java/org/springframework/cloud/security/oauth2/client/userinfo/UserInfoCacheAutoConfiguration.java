@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.userinfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoRestTemplateCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.security.oauth2.client.OAuth2RestTemplate;
+
+/**
+ * Caches user info responses per access token, and shares concurrent requests for the
+ * same token, so that resource servers using
+ * <code>security.oauth2.resource.user-info-uri</code> do not call the authorization
+ * server for every request. Both go in front of any other interceptor of the user info
+ * template, including the load balancer, with the cache first.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ OAuth2RestTemplate.class, UserInfoRestTemplateCustomizer.class })
+@EnableConfigurationProperties({ UserInfoCacheProperties.class, UserInfoCoalescingProperties.class })
+@Deprecated
+public class UserInfoCacheAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty("spring.cloud.security.oauth2.resource.user-info-cache.enabled")
+	public UserInfoCacheInterceptor userInfoCacheInterceptor(UserInfoCacheProperties properties) {
+		return new UserInfoCacheInterceptor(properties.getMaxSize(), properties.getTimeToLive());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty("spring.cloud.security.oauth2.resource.user-info-coalescing.enabled")
+	public UserInfoCoalescingInterceptor userInfoCoalescingInterceptor(UserInfoCoalescingProperties properties) {
+		return new UserInfoCoalescingInterceptor(properties.getTimeout());
+	}
+
+	@Bean
+	public UserInfoRestTemplateCustomizer cachingUserInfoRestTemplateCustomizer(
+			final ObjectProvider<UserInfoCacheInterceptor> userInfoCacheInterceptor,
+			final ObjectProvider<UserInfoCoalescingInterceptor> userInfoCoalescingInterceptor) {
+		return new UserInfoRestTemplateCustomizer() {
+			@Override
+			public void customize(OAuth2RestTemplate restTemplate) {
+				List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
+				userInfoCacheInterceptor.ifAvailable(interceptors::add);
+				userInfoCoalescingInterceptor.ifAvailable(interceptors::add);
+				if (!interceptors.isEmpty()) {
+					interceptors.addAll(restTemplate.getInterceptors());
+					restTemplate.setInterceptors(interceptors);
+				}
+			}
+		};
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.userinfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.boot.json.JsonParser;
+import org.springframework.boot.json.JsonParserFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ClientHttpRequestInterceptor} for the user info {@code RestTemplate} that
+ * remembers successful responses, so that a token presented again and again is not sent
+ * to the authorization server every time. Entries are keyed by a SHA-256 hash of the
+ * request line and the <code>Authorization</code> header, so raw tokens are not kept as
+ * keys. They live for a fixed time, but never past the <code>exp</code> claim of a JWT
+ * access token, and the oldest entries are evicted once the cache is full.
+ */
+@Deprecated
+public class UserInfoCacheInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final JsonParser PARSER = JsonParserFactory.getJsonParser();
+
+	private final ConcurrentMap<String, CachedResponse> responses = new ConcurrentHashMap<>();
+
+	private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+	private final int maxSize;
+
+	private final Duration timeToLive;
+
+	private Clock clock = Clock.systemUTC();
+
+	public UserInfoCacheInterceptor(int maxSize, Duration timeToLive) {
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		Assert.notNull(timeToLive, "timeToLive must not be null");
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+	}
+
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock must not be null");
+		this.clock = clock;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+		if (request.getMethod() != HttpMethod.GET || authorization == null) {
+			return execution.execute(request, body);
+		}
+		String key = key(request, authorization);
+		Instant now = clock.instant();
+		CachedResponse cached = responses.get(key);
+		if (cached != null && now.isBefore(cached.expiry)) {
+			return cached.response.response();
+		}
+		ClientHttpResponse response = execution.execute(request, body);
+		if (response.getRawStatusCode() != HttpStatus.OK.value()) {
+			return response;
+		}
+		BufferedResponse buffered = BufferedResponse.of(response);
+		put(key, new CachedResponse(buffered, expiry(now, authorization)));
+		return buffered.response();
+	}
+
+	/**
+	 * @return the number of responses currently held (including expired ones that have
+	 * not been replaced or evicted yet)
+	 */
+	public int size() {
+		return responses.size();
+	}
+
+	private void put(String key, CachedResponse cached) {
+		// Expired entries are only replaced, never removed, so every key in the map is in
+		// the queue exactly once
+		if (responses.put(key, cached) == null) {
+			insertionOrder.add(key);
+			while (responses.size() > maxSize) {
+				String eldest = insertionOrder.poll();
+				if (eldest == null) {
+					break;
+				}
+				responses.remove(eldest);
+			}
+		}
+	}
+
+	private Instant expiry(Instant now, String authorization) {
+		Instant expiry = now.plus(timeToLive);
+		Long exp = expirationClaim(authorization);
+		if (exp != null && exp < expiry.getEpochSecond()) {
+			return Instant.ofEpochSecond(exp);
+		}
+		return expiry;
+	}
+
+	private static Long expirationClaim(String authorization) {
+		String[] parts = authorization.substring(authorization.indexOf(' ') + 1).split("\\.");
+		if (parts.length != 3) {
+			return null;
+		}
+		try {
+			String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+			Map<String, Object> claims = PARSER.parseMap(payload);
+			Object exp = claims.get("exp");
+			return exp instanceof Number ? ((Number) exp).longValue() : null;
+		}
+		catch (IllegalArgumentException e) {
+			// Not a JWT (JsonParseException is an IllegalArgumentException)
+			return null;
+		}
+	}
+
+	static String key(HttpRequest request, String authorization) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update((request.getMethod() + " " + request.getURI() + "\n").getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(digest.digest(authorization.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not supported", e);
+		}
+	}
+
+	private static final class CachedResponse {
+
+		private final BufferedResponse response;
+
+		private final Instant expiry;
+
+		CachedResponse(BufferedResponse response, Instant expiry) {
+			this.response = response;
+			this.expiry = expiry;
+		}
+
+	}
+
+}
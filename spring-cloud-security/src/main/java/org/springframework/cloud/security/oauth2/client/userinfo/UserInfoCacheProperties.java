@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.userinfo;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration for caching the responses of the user info endpoint.
+ */
+@ConfigurationProperties("spring.cloud.security.oauth2.resource.user-info-cache")
+@Deprecated
+public class UserInfoCacheProperties {
+
+	/**
+	 * Whether to cache user info responses per access token.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Maximum number of responses to keep.
+	 */
+	private int maxSize = 10000;
+
+	/**
+	 * How long to keep a response. Responses for JWT access tokens are never kept past
+	 * the expiry of the token.
+	 */
+	private Duration timeToLive = Duration.ofMinutes(1);
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public Duration getTimeToLive() {
+		return timeToLive;
+	}
+
+	public void setTimeToLive(Duration timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.userinfo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ClientHttpRequestInterceptor} for the user info {@code RestTemplate} that sends
+ * at most one request at a time per access token. Requests for a token that is already
+ * being looked up wait (for a bounded time) and get a copy of the same response, whatever
+ * its status, or the same exception.
+ */
+@Deprecated
+public class UserInfoCoalescingInterceptor implements ClientHttpRequestInterceptor {
+
+	private final ConcurrentMap<String, CompletableFuture<BufferedResponse>> inFlight = new ConcurrentHashMap<>();
+
+	private final Duration timeout;
+
+	public UserInfoCoalescingInterceptor(Duration timeout) {
+		Assert.notNull(timeout, "timeout must not be null");
+		this.timeout = timeout;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+		if (request.getMethod() != HttpMethod.GET || authorization == null) {
+			return execution.execute(request, body);
+		}
+		String key = UserInfoCacheInterceptor.key(request, authorization);
+		CompletableFuture<BufferedResponse> flight = new CompletableFuture<>();
+		CompletableFuture<BufferedResponse> existing = inFlight.putIfAbsent(key, flight);
+		if (existing != null) {
+			return await(request, existing).response();
+		}
+		try {
+			BufferedResponse response = BufferedResponse.of(execution.execute(request, body));
+			flight.complete(response);
+			return response.response();
+		}
+		catch (IOException | RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			inFlight.remove(key, flight);
+		}
+	}
+
+	private BufferedResponse await(HttpRequest request, CompletableFuture<BufferedResponse> flight)
+			throws IOException {
+		try {
+			return flight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("User info request failed for " + request.getURI(), cause);
+		}
+		catch (TimeoutException e) {
+			throw new IOException("Timed out after " + timeout + " waiting for user info from " + request.getURI());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for user info from " + request.getURI());
+		}
+	}
+
+}
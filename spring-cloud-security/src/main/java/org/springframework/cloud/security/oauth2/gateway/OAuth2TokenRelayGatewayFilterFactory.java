@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.gateway;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.AbstractOAuth2Token;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Gateway filter that relays the access token of the current user to the downstream
+ * service in an Authorization header. The token is taken from the reactive security
+ * context: either the incoming bearer token of a resource server, or the token of the
+ * authorized client of an OAuth2 login. If a <code>clientRegistrationId</code> is
+ * configured the token is obtained for that client registration instead (e.g. with
+ * <code>client_credentials</code>). Everything is non-blocking, so the filter runs on
+ * the event loop. The filter is called <code>OAuth2TokenRelay</code>, so that it does not
+ * clash with the <code>TokenRelay</code> filter of Spring Cloud Gateway itself (which
+ * only relays the tokens of an OAuth2 login).
+ *
+ * <pre>
+ * filters:
+ * - OAuth2TokenRelay
+ * - OAuth2TokenRelay=inventory-client
+ * </pre>
+ */
+@Deprecated
+public class OAuth2TokenRelayGatewayFilterFactory
+		extends AbstractGatewayFilterFactory<OAuth2TokenRelayGatewayFilterFactory.Config> {
+
+	private static final String ANONYMOUS_PRINCIPAL = "anonymousUser";
+
+	private final ObjectProvider<ReactiveOAuth2AuthorizedClientManager> clientManagerProvider;
+
+	private volatile ReactiveOAuth2AuthorizedClientManager clientManager;
+
+	/**
+	 * @param clientManager the manager for authorized clients, resolved when it is first
+	 * needed. If there is none tokens are only taken from bearer token authentication.
+	 */
+	public OAuth2TokenRelayGatewayFilterFactory(ObjectProvider<ReactiveOAuth2AuthorizedClientManager> clientManager) {
+		super(Config.class);
+		this.clientManagerProvider = clientManager;
+	}
+
+	@Override
+	public List<String> shortcutFieldOrder() {
+		return Collections.singletonList("clientRegistrationId");
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		String clientRegistrationId = config.getClientRegistrationId();
+		if (StringUtils.hasText(clientRegistrationId) && clientManager() == null) {
+			throw new IllegalStateException("A ReactiveOAuth2AuthorizedClientManager is needed to obtain tokens for '"
+					+ clientRegistrationId + "'");
+		}
+		return (exchange, chain) -> {
+			Mono<Authentication> authentication = ReactiveSecurityContextHolder.getContext()
+					.map(SecurityContext::getAuthentication);
+			Mono<String> token;
+			if (StringUtils.hasText(clientRegistrationId)) {
+				token = authentication.map(Optional::of).defaultIfEmpty(Optional.empty())
+						.flatMap(principal -> clientToken(exchange, principal.orElse(null), clientRegistrationId));
+			}
+			else {
+				token = authentication.flatMap(principal -> relayedToken(exchange, principal));
+			}
+			return token.map(value -> withBearerAuth(exchange, value)).defaultIfEmpty(exchange).flatMap(chain::filter);
+		};
+	}
+
+	private Mono<String> relayedToken(ServerWebExchange exchange, Authentication authentication) {
+		if (authentication.getCredentials() instanceof AbstractOAuth2Token) {
+			return Mono.just(((AbstractOAuth2Token) authentication.getCredentials()).getTokenValue());
+		}
+		if (authentication instanceof OAuth2AuthenticationToken && clientManager() != null) {
+			return clientToken(exchange, authentication,
+					((OAuth2AuthenticationToken) authentication).getAuthorizedClientRegistrationId());
+		}
+		return Mono.empty();
+	}
+
+	private Mono<String> clientToken(ServerWebExchange exchange, Authentication authentication,
+			String clientRegistrationId) {
+		OAuth2AuthorizeRequest.Builder request = OAuth2AuthorizeRequest.withClientRegistrationId(clientRegistrationId)
+				.attribute(ServerWebExchange.class.getName(), exchange);
+		if (authentication != null) {
+			request.principal(authentication);
+		}
+		else {
+			request.principal(ANONYMOUS_PRINCIPAL);
+		}
+		return clientManager().authorize(request.build()).map(OAuth2AuthorizedClient::getAccessToken)
+				.map(AbstractOAuth2Token::getTokenValue);
+	}
+
+	private ReactiveOAuth2AuthorizedClientManager clientManager() {
+		ReactiveOAuth2AuthorizedClientManager clientManager = this.clientManager;
+		if (clientManager == null) {
+			// Keep looking until there is one, it may be registered after this factory
+			clientManager = clientManagerProvider.getIfAvailable();
+			this.clientManager = clientManager;
+		}
+		return clientManager;
+	}
+
+	private ServerWebExchange withBearerAuth(ServerWebExchange exchange, String token) {
+		return exchange.mutate().request(request -> request.headers(headers -> headers.setBearerAuth(token))).build();
+	}
+
+	public static class Config {
+
+		/**
+		 * Client registration to obtain the token for. If empty the token of the current
+		 * user is relayed.
+		 */
+		private String clientRegistrationId;
+
+		public String getClientRegistrationId() {
+			return clientRegistrationId;
+		}
+
+		public void setClientRegistrationId(String clientRegistrationId) {
+			this.clientRegistrationId = clientRegistrationId;
+		}
+
+	}
+
+}
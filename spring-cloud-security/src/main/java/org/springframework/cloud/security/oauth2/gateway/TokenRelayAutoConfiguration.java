@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.gateway;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.autoconfigure.security.oauth2.client.reactive.ReactiveOAuth2ClientAutoConfiguration;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientProviderBuilder;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.DefaultReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.web.server.ServerOAuth2AuthorizedClientRepository;
+
+/**
+ * Registers the {@link OAuth2TokenRelayGatewayFilterFactory} in a Spring Cloud Gateway,
+ * with a {@link ReactiveOAuth2AuthorizedClientManager} if the app is an OAuth2 client. The
+ * bean and filter names differ from the ones of the token relay in Spring Cloud Gateway
+ * itself, so both can be used in the same app.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ GatewayFilterFactory.class, ReactiveOAuth2AuthorizedClientManager.class })
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+@ConditionalOnProperty(name = "spring.cloud.gateway.enabled", matchIfMissing = true)
+@AutoConfigureAfter(ReactiveOAuth2ClientAutoConfiguration.class)
+@Deprecated
+public class TokenRelayAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public OAuth2TokenRelayGatewayFilterFactory oauth2TokenRelayGatewayFilterFactory(
+			ObjectProvider<ReactiveOAuth2AuthorizedClientManager> clientManager) {
+		return new OAuth2TokenRelayGatewayFilterFactory(clientManager);
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnBean({ ReactiveClientRegistrationRepository.class, ServerOAuth2AuthorizedClientRepository.class })
+	protected static class AuthorizedClientManagerConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public ReactiveOAuth2AuthorizedClientManager oauth2TokenRelayAuthorizedClientManager(
+				ReactiveClientRegistrationRepository clientRegistrationRepository,
+				ServerOAuth2AuthorizedClientRepository authorizedClientRepository) {
+			DefaultReactiveOAuth2AuthorizedClientManager manager = new DefaultReactiveOAuth2AuthorizedClientManager(
+					clientRegistrationRepository, authorizedClientRepository);
+			manager.setAuthorizedClientProvider(ReactiveOAuth2AuthorizedClientProviderBuilder.builder()
+					.authorizationCode().refreshToken().clientCredentials().build());
+			return manager;
+		}
+
+	}
+
+}
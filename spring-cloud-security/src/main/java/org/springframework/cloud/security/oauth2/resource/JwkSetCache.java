@@ -0,0 +1,225 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.resource;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestOperations;
+
+/**
+ * A {@link JWKSource} that keeps the JWK set of the authorization server in memory. The
+ * set is downloaded on first use and then refreshed in the background. A token signed
+ * with a key that is not in the set (e.g. after a key rotation) triggers an immediate
+ * download, but at most once per minimum refetch interval, so that tokens with made-up
+ * key ids cannot be used to flood the authorization server. Threads that need the set
+ * while it is being downloaded wait for that download. The background refresh runs
+ * between {@link #afterPropertiesSet()} and {@link #destroy()}.
+ */
+@Deprecated
+public class JwkSetCache implements JWKSource<SecurityContext>, InitializingBean, DisposableBean {
+
+	private static final Log LOG = LogFactory.getLog(JwkSetCache.class);
+
+	private final RestOperations restOperations;
+
+	private final String jwkSetUri;
+
+	private final Duration refreshInterval;
+
+	private ScheduledExecutorService executor;
+
+	// Guards the JWK set and the download in progress, but is never held during a download
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private CompletableFuture<JWKSet> pendingDownload;
+
+	private Duration minRefetchInterval = Duration.ofSeconds(30);
+
+	private volatile JWKSet jwkSet;
+
+	private long lastAttempt;
+
+	public JwkSetCache(RestOperations restOperations, String jwkSetUri, Duration refreshInterval) {
+		Assert.notNull(restOperations, "restOperations must not be null");
+		Assert.hasText(jwkSetUri, "jwkSetUri must not be empty");
+		Assert.isTrue(refreshInterval != null && !refreshInterval.isNegative() && !refreshInterval.isZero(),
+				"refreshInterval must be positive");
+		this.restOperations = restOperations;
+		this.jwkSetUri = jwkSetUri;
+		this.refreshInterval = refreshInterval;
+	}
+
+	@Override
+	public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+		JWKSet current = jwkSet;
+		if (current == null) {
+			current = refetch(null);
+		}
+		List<JWK> keys = jwkSelector.select(current);
+		if (keys.isEmpty()) {
+			JWKSet refetched = refetch(current);
+			if (refetched != current) {
+				keys = jwkSelector.select(refetched);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * @param minRefetchInterval the minimum time between two downloads of the JWK set
+	 * that are caused by unknown keys (default 30 seconds)
+	 */
+	public void setMinRefetchInterval(Duration minRefetchInterval) {
+		Assert.notNull(minRefetchInterval, "minRefetchInterval must not be null");
+		this.minRefetchInterval = minRefetchInterval;
+	}
+
+	/**
+	 * Start refreshing the JWK set in the background.
+	 */
+	@Override
+	public synchronized void afterPropertiesSet() {
+		if (executor == null) {
+			executor = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("oauth2-jwk-refresh-"));
+			long interval = refreshInterval.toMillis();
+			executor.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void destroy() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	private JWKSet refetch(JWKSet seen) throws KeySourceException {
+		CompletableFuture<JWKSet> pending;
+		boolean downloading = false;
+		lock.lock();
+		try {
+			if (jwkSet != seen) {
+				// Another thread downloaded it in the meantime
+				return jwkSet;
+			}
+			pending = pendingDownload;
+			if (pending == null) {
+				long now = System.nanoTime();
+				if (lastAttempt != 0 && now - lastAttempt < minRefetchInterval.toNanos()) {
+					if (seen == null) {
+						throw new KeySourceException("JWK set from " + jwkSetUri + " is not available");
+					}
+					return seen;
+				}
+				lastAttempt = now;
+				pending = new CompletableFuture<>();
+				pendingDownload = pending;
+				downloading = true;
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+		if (downloading) {
+			completeDownload(pending);
+		}
+		try {
+			return pending.get();
+		}
+		catch (ExecutionException e) {
+			throw new KeySourceException("Could not download JWK set from " + jwkSetUri, e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KeySourceException("Interrupted while downloading JWK set from " + jwkSetUri, e);
+		}
+	}
+
+	private void completeDownload(CompletableFuture<JWKSet> pending) {
+		try {
+			JWKSet downloaded = download();
+			lock.lock();
+			try {
+				jwkSet = downloaded;
+			}
+			finally {
+				lock.unlock();
+			}
+			pending.complete(downloaded);
+		}
+		catch (ParseException | RuntimeException e) {
+			pending.completeExceptionally(e);
+		}
+		finally {
+			lock.lock();
+			try {
+				pendingDownload = null;
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void refresh() {
+		try {
+			JWKSet downloaded = download();
+			lock.lock();
+			try {
+				jwkSet = downloaded;
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		catch (RestClientException | ParseException e) {
+			LOG.warn("Could not refresh JWK set from " + jwkSetUri + ", keeping the current one", e);
+		}
+	}
+
+	private JWKSet download() throws ParseException {
+		String body = restOperations.getForObject(jwkSetUri, String.class);
+		if (body == null) {
+			throw new ParseException("Empty JWK set", 0);
+		}
+		return JWKSet.parse(body);
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.resource;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.oauth2.OAuth2AutoConfiguration;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.ResourceServerProperties;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoTokenServices;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Validates JWT access tokens locally when the resource server uses
+ * {@link UserInfoTokenServices}, so that only opaque tokens cost a (possibly load
+ * balanced) call to the user info endpoint. A {@link LocalJwtTokenServices} that
+ * delegates to the user info token services is registered as the primary token services.
+ * Tokens are only validated locally if the issuer and audience they must have are
+ * configured, since otherwise tokens issued for other resource servers would be accepted.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ UserInfoTokenServices.class, DefaultJWTProcessor.class })
+@ConditionalOnProperty(prefix = "spring.cloud.security.oauth2.resource.local-jwt",
+		name = { "enabled", "issuer", "audience" })
+@ConditionalOnBean(UserInfoTokenServices.class)
+@AutoConfigureAfter(OAuth2AutoConfiguration.class)
+@EnableConfigurationProperties(LocalJwtProperties.class)
+@Deprecated
+public class LocalJwtAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public JwkSetCache jwkSetCache(LocalJwtProperties properties,
+			ObjectProvider<ResourceServerProperties> resourceServerProperties,
+			ObjectProvider<ClientHttpRequestFactory> requestFactory) {
+		String jwkSetUri = properties.getJwkSetUri();
+		if (!StringUtils.hasText(jwkSetUri)) {
+			ResourceServerProperties resource = resourceServerProperties.getIfAvailable();
+			jwkSetUri = resource != null ? resource.getJwk().getKeySetUri() : null;
+		}
+		if (!StringUtils.hasText(jwkSetUri)) {
+			throw new IllegalStateException("spring.cloud.security.oauth2.resource.local-jwt.jwk-set-uri "
+					+ "(or security.oauth2.resource.jwk.key-set-uri) must be set to validate tokens locally");
+		}
+		RestTemplate restTemplate = new RestTemplate(requestFactory.getIfUnique(() -> {
+			SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+			factory.setConnectTimeout((int) properties.getConnectTimeout().toMillis());
+			factory.setReadTimeout((int) properties.getReadTimeout().toMillis());
+			return factory;
+		}));
+		JwkSetCache cache = new JwkSetCache(restTemplate, jwkSetUri, properties.getRefreshInterval());
+		cache.setMinRefetchInterval(properties.getMinRefetchInterval());
+		return cache;
+	}
+
+	@Bean
+	@Primary
+	@ConditionalOnMissingBean
+	public LocalJwtTokenServices localJwtTokenServices(JwkSetCache jwkSetCache, LocalJwtProperties properties,
+			UserInfoTokenServices userInfoTokenServices) {
+		return new LocalJwtTokenServices(jwkSetCache, JWSAlgorithm.parse(properties.getJwsAlgorithm()),
+				properties.getIssuer(), properties.getAudience(), userInfoTokenServices);
+	}
+
+}
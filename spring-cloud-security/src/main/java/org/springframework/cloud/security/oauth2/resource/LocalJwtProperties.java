@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.resource;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration for validating JWT access tokens locally instead of calling the user info
+ * endpoint.
+ */
+@ConfigurationProperties("spring.cloud.security.oauth2.resource.local-jwt")
+@Deprecated
+public class LocalJwtProperties {
+
+	/**
+	 * Whether to validate JWT access tokens locally, and only call the user info endpoint
+	 * for other tokens.
+	 */
+	private boolean enabled;
+
+	/**
+	 * URI of the JWK set of the authorization server. Defaults to
+	 * security.oauth2.resource.jwk.key-set-uri.
+	 */
+	private String jwkSetUri;
+
+	/**
+	 * Issuer ("iss" claim) that tokens must have been issued by. Tokens are only
+	 * validated locally if both the issuer and the audience are set.
+	 */
+	private String issuer;
+
+	/**
+	 * Audience ("aud" claim) that tokens must have been issued for, i.e. the identifier
+	 * of this resource server.
+	 */
+	private String audience;
+
+	/**
+	 * Algorithm that tokens are signed with.
+	 */
+	private String jwsAlgorithm = "RS256";
+
+	/**
+	 * Time between background downloads of the JWK set.
+	 */
+	private Duration refreshInterval = Duration.ofMinutes(5);
+
+	/**
+	 * Minimum time between downloads of the JWK set caused by tokens signed with an
+	 * unknown key.
+	 */
+	private Duration minRefetchInterval = Duration.ofSeconds(30);
+
+	/**
+	 * Connect timeout of JWK set downloads, unless the application has a (pooled) request
+	 * factory of its own.
+	 */
+	private Duration connectTimeout = Duration.ofSeconds(2);
+
+	/**
+	 * Read timeout of JWK set downloads, unless the application has a (pooled) request
+	 * factory of its own.
+	 */
+	private Duration readTimeout = Duration.ofSeconds(10);
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public String getJwkSetUri() {
+		return jwkSetUri;
+	}
+
+	public void setJwkSetUri(String jwkSetUri) {
+		this.jwkSetUri = jwkSetUri;
+	}
+
+	public String getIssuer() {
+		return issuer;
+	}
+
+	public void setIssuer(String issuer) {
+		this.issuer = issuer;
+	}
+
+	public String getAudience() {
+		return audience;
+	}
+
+	public void setAudience(String audience) {
+		this.audience = audience;
+	}
+
+	public String getJwsAlgorithm() {
+		return jwsAlgorithm;
+	}
+
+	public void setJwsAlgorithm(String jwsAlgorithm) {
+		this.jwsAlgorithm = jwsAlgorithm;
+	}
+
+	public Duration getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	public void setRefreshInterval(Duration refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+	public Duration getMinRefetchInterval() {
+		return minRefetchInterval;
+	}
+
+	public void setMinRefetchInterval(Duration minRefetchInterval) {
+		this.minRefetchInterval = minRefetchInterval;
+	}
+
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(Duration connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public Duration getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(Duration readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+}
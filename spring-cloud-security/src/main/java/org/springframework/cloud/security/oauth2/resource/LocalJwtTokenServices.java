@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.resource;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.proc.ConfigurableJWTProcessor;
+import com.nimbusds.jwt.proc.DefaultJWTClaimsVerifier;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ResourceServerTokenServices} that validates JWT access tokens locally, against
+ * the keys of a {@link JWKSource} such as a {@link JwkSetCache}, and hands any other
+ * (opaque) token to a delegate, typically the remote user info token services. A JWT is
+ * only valid if it has been issued by the expected issuer for the expected audience (this
+ * resource server) and has not expired, so that tokens the same authorization server
+ * issued for other resource servers are rejected. The claims of a valid JWT are turned
+ * into an authentication by an {@link AccessTokenConverter}, the same way as for a
+ * resource server that is configured with a JWT token store.
+ */
+@Deprecated
+public class LocalJwtTokenServices implements ResourceServerTokenServices {
+
+	private final ConfigurableJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+
+	private final ResourceServerTokenServices delegate;
+
+	private AccessTokenConverter accessTokenConverter = new DefaultAccessTokenConverter();
+
+	/**
+	 * @param jwkSource the keys tokens may be signed with
+	 * @param algorithm the algorithm tokens are signed with
+	 * @param issuer the required issuer ("iss" claim) of tokens
+	 * @param audience the audience ("aud" claim) tokens must have been issued for
+	 * @param delegate the token services for tokens that are not JWTs
+	 */
+	public LocalJwtTokenServices(JWKSource<SecurityContext> jwkSource, JWSAlgorithm algorithm, String issuer,
+			String audience, ResourceServerTokenServices delegate) {
+		Assert.notNull(jwkSource, "jwkSource must not be null");
+		Assert.notNull(algorithm, "algorithm must not be null");
+		Assert.hasText(issuer, "issuer must not be empty");
+		Assert.hasText(audience, "audience must not be empty");
+		Assert.notNull(delegate, "delegate must not be null");
+		this.processor.setJWSKeySelector(new JWSVerificationKeySelector<>(algorithm, jwkSource));
+		this.processor.setJWTClaimsSetVerifier(new DefaultJWTClaimsVerifier<>(audience,
+				new JWTClaimsSet.Builder().issuer(issuer).build(), new HashSet<>(Arrays.asList("iss", "aud", "exp"))));
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param accessTokenConverter converts the claims of a valid JWT (default
+	 * {@link DefaultAccessTokenConverter})
+	 */
+	public void setAccessTokenConverter(AccessTokenConverter accessTokenConverter) {
+		Assert.notNull(accessTokenConverter, "accessTokenConverter must not be null");
+		this.accessTokenConverter = accessTokenConverter;
+	}
+
+	/**
+	 * @return the token services for tokens that are not JWTs
+	 */
+	public ResourceServerTokenServices getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public OAuth2Authentication loadAuthentication(String accessToken)
+			throws AuthenticationException, InvalidTokenException {
+		JWT jwt = parse(accessToken);
+		if (jwt == null) {
+			return delegate.loadAuthentication(accessToken);
+		}
+		return accessTokenConverter.extractAuthentication(claims(jwt));
+	}
+
+	@Override
+	public OAuth2AccessToken readAccessToken(String accessToken) {
+		JWT jwt = parse(accessToken);
+		if (jwt == null) {
+			return delegate.readAccessToken(accessToken);
+		}
+		return accessTokenConverter.extractAccessToken(accessToken, claims(jwt));
+	}
+
+	private JWT parse(String accessToken) {
+		try {
+			return JWTParser.parse(accessToken);
+		}
+		catch (ParseException e) {
+			// Opaque token
+			return null;
+		}
+	}
+
+	private Map<String, Object> claims(JWT jwt) {
+		JWTClaimsSet claimsSet;
+		try {
+			claimsSet = processor.process(jwt, null);
+		}
+		catch (BadJOSEException | JOSEException e) {
+			throw new InvalidTokenException("Invalid access token: " + e.getMessage(), e);
+		}
+		// The converters expect dates as seconds since the epoch, like in the encoded JWT
+		Map<String, Object> claims = new LinkedHashMap<>(claimsSet.getClaims());
+		for (Map.Entry<String, Object> claim : claims.entrySet()) {
+			if (claim.getValue() instanceof Date) {
+				claim.setValue(((Date) claim.getValue()).getTime() / 1000);
+			}
+		}
+		return claims;
+	}
+
+}
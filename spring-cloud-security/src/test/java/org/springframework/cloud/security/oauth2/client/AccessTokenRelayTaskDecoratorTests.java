@@ -0,0 +1,169 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
+import org.springframework.security.oauth2.client.token.AccessTokenRequest;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.authentication.OAuth2AuthenticationDetails;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccessTokenRelayTaskDecoratorTests {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	private final AccessTokenRelayTaskDecorator decorator = new AccessTokenRelayTaskDecorator();
+
+	@After
+	public void close() {
+		executor.shutdownNow();
+		SecurityContextHolder.clearContext();
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void contextsCarriedToWorkerThread() throws Exception {
+		Authentication authentication = authenticate("FOO");
+		RequestAttributes attributes = new ServletRequestAttributes(new MockHttpServletRequest());
+		RequestContextHolder.setRequestAttributes(attributes);
+		Object[] seen = new Object[2];
+
+		executor.submit(decorator.decorate(() -> {
+			seen[0] = SecurityContextHolder.getContext().getAuthentication();
+			seen[1] = RequestContextHolder.getRequestAttributes();
+		})).get(5, TimeUnit.SECONDS);
+
+		assertThat(seen[0]).isSameAs(authentication);
+		assertThat(seen[1]).isNotNull().isNotSameAs(attributes);
+	}
+
+	@Test
+	public void tokenCapturedWhenTaskDecorated() throws Exception {
+		OAuth2ClientContext context = new RequestScopedClientContext();
+		ServletRequestAttributes attributes = new ServletRequestAttributes(new MockHttpServletRequest());
+		RequestContextHolder.setRequestAttributes(attributes);
+		context.setAccessToken(new DefaultOAuth2AccessToken("FOO"));
+		Object[] seen = new Object[1];
+		Runnable task = new AccessTokenRelayTaskDecorator(context)
+				.decorate(() -> seen[0] = context.getAccessToken().getValue());
+
+		// The request completes before the task runs
+		attributes.requestCompleted();
+		RequestContextHolder.resetRequestAttributes();
+		executor.submit(task).get(5, TimeUnit.SECONDS);
+
+		assertThat(seen[0]).isEqualTo("FOO");
+	}
+
+	@Test
+	public void workerThreadRestored() throws Exception {
+		authenticate("FOO");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		executor.submit(decorator.decorate(() -> {
+		})).get(5, TimeUnit.SECONDS);
+
+		Object[] seen = executor.submit(() -> new Object[] { SecurityContextHolder.getContext().getAuthentication(),
+				RequestContextHolder.getRequestAttributes() }).get(5, TimeUnit.SECONDS);
+
+		assertThat(seen[0]).isNull();
+		assertThat(seen[1]).isNull();
+	}
+
+	@Test
+	public void relayTokenInCompletableFuture() throws Exception {
+		authenticate("FOO");
+		RelayingOAuth2ClientContext context = new RelayingOAuth2ClientContext(new DefaultOAuth2ClientContext());
+		Executor relaying = decorator.decorate(executor);
+
+		OAuth2AccessToken token = CompletableFuture.supplyAsync(context::getAccessToken, relaying).get(5,
+				TimeUnit.SECONDS);
+
+		assertThat(token.getValue()).isEqualTo("FOO");
+	}
+
+	private Authentication authenticate(String token) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_VALUE, token);
+		request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_TYPE, "Bearer");
+		TestingAuthenticationToken authentication = new TestingAuthenticationToken("user", token);
+		authentication.setDetails(new OAuth2AuthenticationDetails(request));
+		SecurityContextHolder.getContext().setAuthentication(authentication);
+		return authentication;
+	}
+
+	/**
+	 * Stands in for the request scoped proxy of the client context.
+	 */
+	private static class RequestScopedClientContext implements OAuth2ClientContext {
+
+		private OAuth2ClientContext target() {
+			RequestAttributes attributes = RequestContextHolder.currentRequestAttributes();
+			Object context = attributes.getAttribute("clientContext", RequestAttributes.SCOPE_REQUEST);
+			if (context == null) {
+				context = new DefaultOAuth2ClientContext();
+				attributes.setAttribute("clientContext", context, RequestAttributes.SCOPE_REQUEST);
+			}
+			return (OAuth2ClientContext) context;
+		}
+
+		@Override
+		public OAuth2AccessToken getAccessToken() {
+			return target().getAccessToken();
+		}
+
+		@Override
+		public void setAccessToken(OAuth2AccessToken accessToken) {
+			target().setAccessToken(accessToken);
+		}
+
+		@Override
+		public AccessTokenRequest getAccessTokenRequest() {
+			return target().getAccessTokenRequest();
+		}
+
+		@Override
+		public void setPreservedState(String stateKey, Object preservedState) {
+			target().setPreservedState(stateKey, preservedState);
+		}
+
+		@Override
+		public Object removePreservedState(String stateKey) {
+			return target().removePreservedState(stateKey);
+		}
+
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Duration;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
+import org.springframework.security.oauth2.client.token.DefaultAccessTokenRequest;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedPreservedStateOAuth2ClientContextTests {
+
+	@Test
+	public void stateRemovedWhenRedirectReturns() {
+		BoundedPreservedStateOAuth2ClientContext context = context(10, Duration.ofMinutes(1));
+		context.setPreservedState("abc", "https://example.com/home");
+
+		assertThat(context.removePreservedState("abc")).isEqualTo("https://example.com/home");
+		assertThat(context.removePreservedState("abc")).isNull();
+		assertThat(context.getPreservedStateCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void oldestStateDroppedAtCapacity() {
+		BoundedPreservedStateOAuth2ClientContext context = context(2, Duration.ofMinutes(1));
+		context.setPreservedState("first", "1");
+		context.setPreservedState("second", "2");
+		context.setPreservedState("first", "1");
+		context.setPreservedState("third", "3");
+
+		assertThat(context.getPreservedStateCount()).isEqualTo(2);
+		assertThat(context.removePreservedState("second")).isNull();
+		assertThat(context.removePreservedState("first")).isEqualTo("1");
+		assertThat(context.removePreservedState("third")).isEqualTo("3");
+	}
+
+	@Test
+	public void expiredStateDropped() throws Exception {
+		BoundedPreservedStateOAuth2ClientContext context = context(10, Duration.ofMillis(50));
+		context.setPreservedState("abc", "NONE");
+		Thread.sleep(100);
+
+		assertThat(context.removePreservedState("abc")).isNull();
+		context.setPreservedState("def", "NONE");
+		assertThat(context.getPreservedStateCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void serializable() throws Exception {
+		BoundedPreservedStateOAuth2ClientContext context = context(10, Duration.ofMinutes(1));
+		context.setPreservedState("abc", "NONE");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+			output.writeObject(context);
+		}
+
+		try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			BoundedPreservedStateOAuth2ClientContext copy = (BoundedPreservedStateOAuth2ClientContext) input
+					.readObject();
+			assertThat(copy.removePreservedState("abc")).isEqualTo("NONE");
+		}
+	}
+
+	@Test
+	public void postProcessorBoundsDefaultContexts() {
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean("preservedStateProperties", new PreservedStateProperties());
+		BoundedPreservedStateOAuth2ClientContextPostProcessor postProcessor;
+		postProcessor = new BoundedPreservedStateOAuth2ClientContextPostProcessor(
+				beanFactory.getBeanProvider(PreservedStateProperties.class));
+		DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken("FOO");
+		DefaultOAuth2ClientContext subclass = new DefaultOAuth2ClientContext(new DefaultAccessTokenRequest()) {
+		};
+		subclass.setAccessToken(accessToken);
+		BoundedPreservedStateOAuth2ClientContext bounded = context(10, Duration.ofMinutes(1));
+
+		Object processed = postProcessor.postProcessAfterInitialization(subclass, "context");
+
+		assertThat(processed).isInstanceOf(BoundedPreservedStateOAuth2ClientContext.class);
+		assertThat(((OAuth2ClientContext) processed).getAccessToken()).isSameAs(accessToken);
+		assertThat(((OAuth2ClientContext) processed).getAccessTokenRequest())
+				.isSameAs(subclass.getAccessTokenRequest());
+		assertThat(postProcessor.postProcessAfterInitialization(bounded, "bounded")).isSameAs(bounded);
+	}
+
+	private static BoundedPreservedStateOAuth2ClientContext context(int maxEntries, Duration timeToLive) {
+		return new BoundedPreservedStateOAuth2ClientContext(new DefaultAccessTokenRequest(), maxEntries, timeToLive);
+	}
+
+}
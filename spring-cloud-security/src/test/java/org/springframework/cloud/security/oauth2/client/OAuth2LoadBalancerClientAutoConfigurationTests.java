@@ -27,6 +27,7 @@ import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.oauth2.client.EnableOAuth2Sso;
 import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoRestTemplateFactory;
 import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.security.oauth2.client.hedging.HedgingClientHttpRequestInterceptor;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -82,6 +83,22 @@ public class OAuth2LoadBalancerClientAutoConfigurationTests {
 		request.execute();
 	}
 
+	@Test
+	public void userInfoHedgedByLastInterceptor() {
+		this.context = new SpringApplicationBuilder(ClientConfiguration.class)
+				.properties("spring.config.name=test", "server.port=0", "spring.cloud.gateway.enabled=false",
+						"security.oauth2.resource.userInfoUri:https://nosuchservice",
+						"security.oauth2.resource.loadBalanced=true",
+						"spring.cloud.security.oauth2.resource.hedging.enabled=true")
+				.run();
+
+		assertThat(this.context.containsBean("loadBalancedUserInfoRestTemplateCustomizer")).isFalse();
+		assertThat(this.context.containsBean("retryLoadBalancedUserInfoRestTemplateCustomizer")).isFalse();
+
+		OAuth2RestTemplate template = this.context.getBean(UserInfoRestTemplateFactory.class).getUserInfoRestTemplate();
+		assertThat(template.getInterceptors()).last().isInstanceOf(HedgingClientHttpRequestInterceptor.class);
+	}
+
 	@EnableAutoConfiguration
 	@Configuration(proxyBeanMethods = false)
 	@EnableOAuth2Sso
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.authentication.OAuth2AuthenticationDetails;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class RelayingOAuth2ClientContextTests {
+
+	@After
+	public void close() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	public void delegateUntouchedUntilRead() {
+		authenticate("FOO");
+		OAuth2ClientContext delegate = mock(OAuth2ClientContext.class);
+
+		new RelayingOAuth2ClientContext(delegate);
+
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void relayTokenOnFirstRead() {
+		authenticate("FOO");
+		DefaultOAuth2ClientContext delegate = new DefaultOAuth2ClientContext();
+		RelayingOAuth2ClientContext context = new RelayingOAuth2ClientContext(delegate);
+
+		OAuth2AccessToken token = context.getAccessToken();
+
+		assertThat(token.getValue()).isEqualTo("FOO");
+		assertThat(token.getTokenType()).isEqualTo("Bearer");
+		assertThat(delegate.getAccessToken()).isSameAs(token);
+		assertThat(context.getAccessToken()).isSameAs(token);
+	}
+
+	@Test
+	public void existingTokenNotReplaced() {
+		authenticate("FOO");
+		DefaultOAuth2ClientContext delegate = new DefaultOAuth2ClientContext();
+		delegate.setAccessToken(new DefaultOAuth2AccessToken("BAR"));
+
+		assertThat(new RelayingOAuth2ClientContext(delegate).getAccessToken().getValue()).isEqualTo("BAR");
+	}
+
+	@Test
+	public void noTokenWithoutAuthentication() {
+		assertThat(new RelayingOAuth2ClientContext(new DefaultOAuth2ClientContext()).getAccessToken()).isNull();
+	}
+
+	@Test
+	public void onlyRelayedTokensRecorded() {
+		OAuth2ClientMetrics metrics = mock(OAuth2ClientMetrics.class);
+		RelayingOAuth2ClientContext context = new RelayingOAuth2ClientContext(new DefaultOAuth2ClientContext());
+		context.setMetrics(metrics);
+
+		context.getAccessToken();
+		context.getAccessToken();
+		authenticate("FOO");
+		context.getAccessToken();
+		context.getAccessToken();
+
+		verify(metrics).relay(true);
+		verifyNoMoreInteractions(metrics);
+	}
+
+	private void authenticate(String token) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_VALUE, token);
+		request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_TYPE, "Bearer");
+		TestingAuthenticationToken authentication = new TestingAuthenticationToken("user", token);
+		authentication.setDetails(new OAuth2AuthenticationDetails(request));
+		SecurityContextHolder.getContext().setAuthentication(authentication);
+	}
+
+}
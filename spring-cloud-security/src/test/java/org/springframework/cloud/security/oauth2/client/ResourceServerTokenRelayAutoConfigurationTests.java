@@ -23,6 +23,7 @@ import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.oauth2.client.EnableOAuth2Sso;
 import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoTokenServices;
 import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.security.oauth2.client.ResourceServerTokenRelayAutoConfiguration.ResourceServerTokenRelayRegistrationAutoConfiguration;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -84,6 +85,40 @@ public class ResourceServerTokenRelayAutoConfigurationTests {
 		server.verify();
 	}
 
+	@Test
+	public void lazyRelay() throws Exception {
+		this.context = new SpringApplicationBuilder(ClientConfiguration.class).properties("spring.config.name=test",
+				"server.port=0", "spring.cloud.gateway.enabled=false",
+				"security.oauth2.resource.userInfoUri:https://example.com", "security.oauth2.client.clientId=foo",
+				"spring.cloud.security.oauth2.client.relay.mode=lazy").run();
+		assertThat(this.context.getBean(OAuth2ClientContext.class)).isInstanceOf(RelayingOAuth2ClientContext.class);
+		assertThat(this.context.getBeansOfType(ResourceServerTokenRelayRegistrationAutoConfiguration.class)).isEmpty();
+	}
+
+	@Test
+	public void statelessRelay() throws Exception {
+		this.context = new SpringApplicationBuilder(ClientConfiguration.class).properties("spring.config.name=test",
+				"server.port=0", "spring.cloud.gateway.enabled=false",
+				"security.oauth2.resource.userInfoUri:https://example.com", "security.oauth2.client.clientId=foo",
+				"spring.cloud.security.oauth2.client.relay.mode=stateless").run();
+		assertThat(this.context.getBean(OAuth2ClientContext.class))
+				.isInstanceOf(StatelessRelayingOAuth2ClientContext.class);
+		assertThat(this.context.getBeansOfType(ResourceServerTokenRelayRegistrationAutoConfiguration.class)).isEmpty();
+	}
+
+	@Test
+	public void eagerRelayExchangesLazily() throws Exception {
+		this.context = new SpringApplicationBuilder(ClientConfiguration.class).properties("spring.config.name=test",
+				"server.port=0", "spring.cloud.gateway.enabled=false",
+				"security.oauth2.resource.userInfoUri:https://example.com", "security.oauth2.client.clientId=foo",
+				"spring.cloud.security.oauth2.client.relay.exchange.enabled=true",
+				"spring.cloud.security.oauth2.client.relay.exchange.token-uri=https://example.com/token").run();
+		RelayingOAuth2ClientContext client = this.context.getBean(RelayingOAuth2ClientContext.class);
+		assertThat(client).isNotInstanceOf(StatelessRelayingOAuth2ClientContext.class);
+		assertThat(this.context.getBeansOfType(ResourceServerTokenRelayRegistrationAutoConfiguration.class))
+				.hasSize(1);
+	}
+
 	@EnableAutoConfiguration
 	@Configuration(proxyBeanMethods = false)
 	@EnableResourceServer
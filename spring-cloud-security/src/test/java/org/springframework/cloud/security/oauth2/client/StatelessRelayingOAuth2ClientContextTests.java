@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.authentication.OAuth2AuthenticationDetails;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class StatelessRelayingOAuth2ClientContextTests {
+
+	@After
+	public void close() {
+		SecurityContextHolder.clearContext();
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void relayedTokenKeptInRequest() {
+		authenticate("FOO");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		OAuth2ClientContext delegate = mock(OAuth2ClientContext.class);
+		StatelessRelayingOAuth2ClientContext context = new StatelessRelayingOAuth2ClientContext(delegate);
+
+		OAuth2AccessToken token = context.getAccessToken();
+
+		assertThat(token.getValue()).isEqualTo("FOO");
+		assertThat(context.getAccessToken()).isSameAs(token);
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void tokenResetWithinRequest() {
+		authenticate("FOO");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		OAuth2ClientContext delegate = mock(OAuth2ClientContext.class);
+		StatelessRelayingOAuth2ClientContext context = new StatelessRelayingOAuth2ClientContext(delegate);
+		OAuth2AccessToken first = context.getAccessToken();
+
+		context.setAccessToken(null);
+		OAuth2AccessToken second = context.getAccessToken();
+		context.setAccessToken(new DefaultOAuth2AccessToken("BAR"));
+
+		assertThat(first.getValue()).isEqualTo("FOO");
+		assertThat(second).isNull();
+		assertThat(context.getAccessToken().getValue()).isEqualTo("BAR");
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void relayRecordedOncePerRequest() {
+		authenticate("FOO");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		OAuth2ClientMetrics metrics = mock(OAuth2ClientMetrics.class);
+		StatelessRelayingOAuth2ClientContext context = new StatelessRelayingOAuth2ClientContext(
+				mock(OAuth2ClientContext.class));
+		context.setMetrics(metrics);
+
+		context.getAccessToken();
+		context.getAccessToken();
+
+		verify(metrics).relay(true);
+		verifyNoMoreInteractions(metrics);
+	}
+
+	@Test
+	public void nothingRecordedWithoutRelay() {
+		OAuth2ClientMetrics metrics = mock(OAuth2ClientMetrics.class);
+		StatelessRelayingOAuth2ClientContext context = new StatelessRelayingOAuth2ClientContext(
+				new DefaultOAuth2ClientContext());
+		context.setMetrics(metrics);
+
+		context.getAccessToken();
+		authenticate("FOO");
+		context.getAccessToken();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		SecurityContextHolder.clearContext();
+		context.getAccessToken();
+		context.getAccessToken();
+
+		verifyNoInteractions(metrics);
+	}
+
+	@Test
+	public void exchangedOncePerRequest() {
+		authenticate("FOO");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		TokenExchanger exchanger = mock(TokenExchanger.class);
+		given(exchanger.exchange(any(OAuth2AccessToken.class))).willReturn(new DefaultOAuth2AccessToken("BAR"));
+		StatelessRelayingOAuth2ClientContext context = new StatelessRelayingOAuth2ClientContext(
+				mock(OAuth2ClientContext.class));
+		context.setTokenExchanger(exchanger);
+
+		assertThat(context.getAccessToken().getValue()).isEqualTo("BAR");
+		assertThat(context.getAccessToken().getValue()).isEqualTo("BAR");
+		verify(exchanger).exchange(any(OAuth2AccessToken.class));
+	}
+
+	@Test
+	public void relayedWithoutRequest() {
+		authenticate("FOO");
+		OAuth2ClientContext delegate = mock(OAuth2ClientContext.class);
+
+		assertThat(new StatelessRelayingOAuth2ClientContext(delegate).getAccessToken().getValue()).isEqualTo("FOO");
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void delegateUsedWithoutAuthentication() {
+		DefaultOAuth2ClientContext delegate = new DefaultOAuth2ClientContext();
+		StatelessRelayingOAuth2ClientContext context = new StatelessRelayingOAuth2ClientContext(delegate);
+
+		context.setAccessToken(new DefaultOAuth2AccessToken("BAR"));
+
+		assertThat(delegate.getAccessToken().getValue()).isEqualTo("BAR");
+		assertThat(context.getAccessToken().getValue()).isEqualTo("BAR");
+	}
+
+	private void authenticate(String token) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_VALUE, token);
+		request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_TYPE, "Bearer");
+		TestingAuthenticationToken authentication = new TestingAuthenticationToken("user", token);
+		authentication.setDetails(new OAuth2AuthenticationDetails(request));
+		SecurityContextHolder.getContext().setAuthentication(authentication);
+	}
+
+}
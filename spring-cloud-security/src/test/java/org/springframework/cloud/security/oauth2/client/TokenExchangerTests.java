@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.resource.OAuth2AccessDeniedException;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.authentication.OAuth2AuthenticationDetails;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.RestOperations;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class TokenExchangerTests {
+
+	private static final String TOKEN_URI = "https://example.com/token";
+
+	private RestTemplate restTemplate = new RestTemplate();
+
+	private MockRestServiceServer server = MockRestServiceServer.createServer(restTemplate);
+
+	private TokenExchanger exchanger = new TokenExchanger(restTemplate, TOKEN_URI);
+
+	@After
+	public void close() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	public void exchangedOnceUntilExpiry() {
+		exchanger.setClientId("relay");
+		exchanger.setClientSecret("secret");
+		exchanger.setAudience("orders");
+		exchanger.setScope(Arrays.asList("orders.write", "orders.read"));
+		server.expect(ExpectedCount.once(), requestTo(TOKEN_URI)).andExpect(method(HttpMethod.POST))
+				.andExpect(header(HttpHeaders.AUTHORIZATION, "Basic cmVsYXk6c2VjcmV0"))
+				.andExpect(
+						content().formDataContains(Collections.singletonMap("grant_type", TokenExchanger.GRANT_TYPE)))
+				.andExpect(content().formDataContains(Collections.singletonMap("subject_token", "FOO")))
+				.andExpect(content().formDataContains(Collections.singletonMap("audience", "orders")))
+				.andExpect(content().formDataContains(Collections.singletonMap("scope", "orders.read orders.write")))
+				.andRespond(tokenResponse("ORDERS", 60));
+
+		OAuth2AccessToken exchanged = exchanger.exchange(new DefaultOAuth2AccessToken("FOO"));
+		assertThat(exchanged.getValue()).isEqualTo("ORDERS");
+		assertThat(exchanged.getExpiresIn()).isBetween(58, 60);
+		assertThat(exchanged.getScope()).containsExactly("orders.read");
+		assertThat(exchanger.exchange(new DefaultOAuth2AccessToken("FOO"))).isSameAs(exchanged);
+		server.verify();
+	}
+
+	@Test
+	public void clientCredentialsFormEncoded() {
+		exchanger.setClientId("relay service");
+		exchanger.setClientSecret("s3cret:+/");
+		String credentials = Base64.getEncoder()
+				.encodeToString("relay+service:s3cret%3A%2B%2F".getBytes(StandardCharsets.UTF_8));
+		server.expect(ExpectedCount.once(), requestTo(TOKEN_URI))
+				.andExpect(header(HttpHeaders.AUTHORIZATION, "Basic " + credentials))
+				.andRespond(tokenResponse("ORDERS", 60));
+
+		exchanger.exchange(new DefaultOAuth2AccessToken("FOO"));
+		server.verify();
+	}
+
+	@Test
+	public void keyedBySubjectAudienceAndScope() {
+		server.expect(ExpectedCount.times(3), requestTo(TOKEN_URI)).andRespond(tokenResponse("BAR", 60));
+
+		exchanger.exchange(new DefaultOAuth2AccessToken("FOO"), "orders", Collections.singleton("read"));
+		exchanger.exchange(new DefaultOAuth2AccessToken("FOO"), "orders", Arrays.asList("read", "write"));
+		exchanger.exchange(new DefaultOAuth2AccessToken("FOO"), "invoices", Collections.singleton("read"));
+		exchanger.exchange(new DefaultOAuth2AccessToken("FOO"), "orders", Collections.singleton("read"));
+
+		assertThat(exchanger.size()).isEqualTo(3);
+		server.verify();
+	}
+
+	@Test
+	public void expiredTokenExchangedAgain() {
+		server.expect(ExpectedCount.times(2), requestTo(TOKEN_URI)).andRespond(tokenResponse("BAR", 0));
+
+		exchanger.exchange(new DefaultOAuth2AccessToken("FOO"));
+		exchanger.exchange(new DefaultOAuth2AccessToken("FOO"));
+
+		server.verify();
+	}
+
+	@Test
+	public void failedExchange() {
+		server.expect(requestTo(TOKEN_URI)).andRespond(withServerError());
+
+		assertThatThrownBy(() -> exchanger.exchange(new DefaultOAuth2AccessToken("FOO")))
+				.isInstanceOf(OAuth2AccessDeniedException.class);
+	}
+
+	@Test
+	public void failedExchangeFailsRelayingClient() {
+		server.expect(requestTo(TOKEN_URI)).andRespond(withServerError());
+		authenticate("FOO");
+		RelayingOAuth2ClientContext context = new RelayingOAuth2ClientContext(new DefaultOAuth2ClientContext());
+		context.setTokenExchanger(exchanger);
+
+		assertThatThrownBy(context::getAccessToken).isInstanceOf(OAuth2AccessDeniedException.class);
+	}
+
+	@Test
+	public void cachedUntilSubjectTokenExpires() {
+		server.expect(ExpectedCount.times(2), requestTo(TOKEN_URI)).andRespond(tokenResponse("BAR", 60));
+		DefaultOAuth2AccessToken subjectToken = new DefaultOAuth2AccessToken("FOO");
+		subjectToken.setExpiration(new Date(System.currentTimeMillis() - 1000));
+
+		exchanger.exchange(subjectToken);
+		exchanger.exchange(subjectToken);
+
+		server.verify();
+	}
+
+	@Test
+	public void cachedUntilSubjectJwtExpires() {
+		server.expect(ExpectedCount.times(2), requestTo(TOKEN_URI)).andRespond(tokenResponse("BAR", 60));
+		long exp = System.currentTimeMillis() / 1000 - 1;
+		String claims = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(("{\"sub\":\"user\",\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8));
+		DefaultOAuth2AccessToken subjectToken = new DefaultOAuth2AccessToken("eyJhbGciOiJub25lIn0." + claims + ".sig");
+
+		exchanger.exchange(subjectToken);
+		exchanger.exchange(subjectToken);
+
+		server.verify();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void concurrentExchangesCoalesced() throws Exception {
+		RestOperations restOperations = mock(RestOperations.class);
+		CountDownLatch release = new CountDownLatch(1);
+		when(restOperations.exchange(eq(TOKEN_URI), eq(HttpMethod.POST), any(),
+				any(ParameterizedTypeReference.class))).thenAnswer((invocation) -> {
+					release.await();
+					Map<String, Object> body = Collections.singletonMap(OAuth2AccessToken.ACCESS_TOKEN, "BAR");
+					return ResponseEntity.ok(body);
+				});
+		TokenExchanger exchanger = new TokenExchanger(restOperations, TOKEN_URI);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<OAuth2AccessToken> first = executor
+					.submit(() -> exchanger.exchange(new DefaultOAuth2AccessToken("FOO")));
+			Future<OAuth2AccessToken> second = executor
+					.submit(() -> exchanger.exchange(new DefaultOAuth2AccessToken("FOO")));
+			Thread.sleep(100);
+			release.countDown();
+
+			assertThat(first.get(1, TimeUnit.SECONDS).getValue()).isEqualTo("BAR");
+			assertThat(second.get(1, TimeUnit.SECONDS).getValue()).isEqualTo("BAR");
+			verify(restOperations, times(1)).exchange(eq(TOKEN_URI), eq(HttpMethod.POST), any(),
+					any(ParameterizedTypeReference.class));
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void relayExchangedToken() {
+		server.expect(requestTo(TOKEN_URI)).andRespond(tokenResponse("EXCHANGED", 60));
+		authenticate("FOO");
+		DefaultOAuth2ClientContext context = new DefaultOAuth2ClientContext();
+		AccessTokenContextRelay relay = new AccessTokenContextRelay(context);
+		relay.setTokenExchanger(exchanger);
+
+		assertThat(relay.copyToken()).isTrue();
+		assertThat(context.getAccessToken().getValue()).isEqualTo("EXCHANGED");
+	}
+
+	private static ResponseCreator tokenResponse(String value, int expiresIn) {
+		return withSuccess("{\"access_token\":\"" + value + "\",\"token_type\":\"Bearer\",\"expires_in\":" + expiresIn
+				+ ",\"scope\":\"orders.read\",\"issued_token_type\":\"" + TokenExchanger.ACCESS_TOKEN_TYPE + "\"}",
+				MediaType.APPLICATION_JSON);
+	}
+
+	private void authenticate(String token) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_VALUE, token);
+		request.setAttribute(OAuth2AuthenticationDetails.ACCESS_TOKEN_TYPE, "Bearer");
+		TestingAuthenticationToken authentication = new TestingAuthenticationToken("user", token);
+		authentication.setDetails(new OAuth2AuthenticationDetails(request));
+		SecurityContextHolder.getContext().setAuthentication(authentication);
+	}
+
+}
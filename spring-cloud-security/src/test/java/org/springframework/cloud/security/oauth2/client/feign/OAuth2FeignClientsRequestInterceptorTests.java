@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.feign;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import feign.RequestTemplate;
+import feign.Target;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.token.AccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OAuth2FeignClientsRequestInterceptorTests {
+
+	private AccessTokenProvider accessTokenProvider = mock(AccessTokenProvider.class);
+
+	private OAuth2FeignClientsRequestInterceptor interceptor;
+
+	@Before
+	public void init() {
+		when(accessTokenProvider.obtainAccessToken(any(), any())).thenAnswer(
+				(invocation) -> new DefaultOAuth2AccessToken(invocation.<ClientCredentialsResourceDetails>getArgument(0)
+						.getClientId().toUpperCase()));
+		Map<String, ClientCredentialsResourceDetails> resources = new LinkedHashMap<>();
+		resources.put("orders", resource("shop"));
+		resources.put("invoices", resource("shop"));
+		resources.put("stock", resource("warehouse"));
+		interceptor = new OAuth2FeignClientsRequestInterceptor(resources, (resource) -> {
+			OAuth2FeignRequestInterceptor interceptor = new OAuth2FeignRequestInterceptor(
+					new DefaultOAuth2ClientContext(), resource);
+			interceptor.setAccessTokenProvider(accessTokenProvider);
+			return interceptor;
+		});
+	}
+
+	@Test
+	public void tokenPerClient() {
+		assertThat(authorization("orders")).isEqualTo("Bearer SHOP");
+		assertThat(authorization("stock")).isEqualTo("Bearer WAREHOUSE");
+	}
+
+	@Test
+	public void sameCredentialsShareToken() {
+		assertThat(interceptor.getInterceptor("orders")).isSameAs(interceptor.getInterceptor("invoices"));
+
+		assertThat(authorization("orders")).isEqualTo("Bearer SHOP");
+		assertThat(authorization("invoices")).isEqualTo("Bearer SHOP");
+		verify(accessTokenProvider, times(1)).obtainAccessToken(any(), any());
+	}
+
+	@Test
+	public void otherClientsLeftAlone() {
+		assertThat(authorization("unknown")).isNull();
+		assertThat(interceptor.getInterceptor("unknown")).isNull();
+
+		RequestTemplate template = new RequestTemplate();
+		interceptor.apply(template);
+		assertThat(template.headers()).doesNotContainKey(OAuth2FeignRequestInterceptor.AUTHORIZATION);
+	}
+
+	private String authorization(String name) {
+		RequestTemplate template = new RequestTemplate();
+		template.feignTarget(new Target.HardCodedTarget<>(Object.class, name, "http://" + name));
+		interceptor.apply(template);
+		return template.headers().containsKey(OAuth2FeignRequestInterceptor.AUTHORIZATION)
+				? template.headers().get(OAuth2FeignRequestInterceptor.AUTHORIZATION).iterator().next() : null;
+	}
+
+	private static ClientCredentialsResourceDetails resource(String clientId) {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId(clientId);
+		resource.setAccessTokenUri("https://example.com/token");
+		return resource;
+	}
+
+}
@@ -16,9 +16,30 @@
 
 package org.springframework.cloud.security.oauth2.client.feign;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.sun.net.httpserver.HttpServer;
 import feign.Request.HttpMethod;
 import feign.RequestTemplate;
 
@@ -26,16 +47,41 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.security.oauth2.client.metrics.OAuth2ClientMetrics;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCache;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenProviderDispatcher;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenRefreshScheduler;
+import org.springframework.cloud.security.oauth2.client.token.CoalescingAccessTokenAcquirer;
+import org.springframework.cloud.security.oauth2.client.token.InMemoryAccessTokenCache;
+import org.springframework.cloud.security.oauth2.client.token.StaleAccessTokenFallback;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
 import org.springframework.security.oauth2.client.OAuth2ClientContext;
 import org.springframework.security.oauth2.client.resource.BaseOAuth2ProtectedResourceDetails;
 import org.springframework.security.oauth2.client.resource.OAuth2AccessDeniedException;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.token.AccessTokenProvider;
 import org.springframework.security.oauth2.client.token.AccessTokenRequest;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsAccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
 import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -110,4 +156,463 @@ public class OAuth2FeignRequestInterceptorTests {
 				contains("Bearer Fancy"));
 	}
 
+	@Test
+	public void shareClientCredentialsTokenThroughCache() {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId("client");
+		resource.setAccessTokenUri("https://example.com/token");
+		AccessTokenProvider accessTokenProvider = mock(AccessTokenProvider.class);
+		when(accessTokenProvider.obtainAccessToken(any(), any())).thenReturn(new DefaultOAuth2AccessToken("SHARED"));
+		InMemoryAccessTokenCache cache = new InMemoryAccessTokenCache();
+
+		OAuth2FeignRequestInterceptor first = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				resource);
+		first.setAccessTokenProvider(accessTokenProvider);
+		first.setAccessTokenCache(cache);
+		OAuth2FeignRequestInterceptor second = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				resource);
+		second.setAccessTokenProvider(accessTokenProvider);
+		second.setAccessTokenCache(cache);
+
+		Assert.assertEquals("SHARED", first.getToken().getValue());
+		Assert.assertEquals("SHARED", second.getToken().getValue());
+		verify(accessTokenProvider, times(1)).obtainAccessToken(any(), any());
+	}
+
+	@Test
+	public void acquireTokenThroughRequestFactory() {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId("client");
+		resource.setClientSecret("secret");
+		resource.setAccessTokenUri("https://example.com/token");
+		List<URI> requested = new CopyOnWriteArrayList<>();
+		OAuth2FeignRequestInterceptor interceptor = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				resource);
+		interceptor.setAccessTokenRequestFactory((uri, method) -> {
+			requested.add(uri);
+			MockClientHttpResponse response = new MockClientHttpResponse(
+					"{\"access_token\":\"POOLED\",\"token_type\":\"bearer\"}".getBytes(StandardCharsets.UTF_8),
+					HttpStatus.OK);
+			response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+			MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+			request.setResponse(response);
+			return request;
+		});
+
+		Assert.assertEquals("POOLED", interceptor.getToken().getValue());
+		Assert.assertEquals(Collections.singletonList(URI.create("https://example.com/token")), requested);
+	}
+
+	@Test
+	public void postProcessorSharesRequestFactoryOfDefaultProviders() {
+		ClientHttpRequestFactory requestFactory = (uri, method) -> new MockClientHttpRequest(method, uri);
+		AccessTokenProviderDispatcher dispatcher = AccessTokenProviderDispatcher.of(requestFactory);
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean("accessTokenProviderDispatcher", dispatcher);
+		OAuth2FeignRequestInterceptorPostProcessor postProcessor = new OAuth2FeignRequestInterceptorPostProcessor(
+				beanFactory.getBeanProvider(AccessTokenProviderDispatcher.class));
+		OAuth2FeignRequestInterceptor defaults = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				new ClientCredentialsResourceDetails());
+		OAuth2FeignRequestInterceptor custom = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				new ClientCredentialsResourceDetails());
+		AccessTokenProvider accessTokenProvider = mock(AccessTokenProvider.class);
+		custom.setAccessTokenProvider(accessTokenProvider);
+
+		postProcessor.postProcessAfterInitialization(defaults, "defaults");
+		postProcessor.postProcessAfterInitialization(custom, "custom");
+
+		Assert.assertFalse(defaults.usesDefaultAccessTokenProvider());
+		Assert.assertSame(dispatcher, ReflectionTestUtils.getField(defaults, "accessTokenProvider"));
+		Assert.assertSame(accessTokenProvider, ReflectionTestUtils.getField(custom, "accessTokenProvider"));
+	}
+
+	@Test
+	public void postProcessorSharesCacheWithInterceptorsWithoutOne() {
+		InMemoryAccessTokenCache cache = new InMemoryAccessTokenCache();
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean("accessTokenCache", cache);
+		OAuth2FeignRequestInterceptorPostProcessor postProcessor = new OAuth2FeignRequestInterceptorPostProcessor(
+				beanFactory.getBeanProvider(AccessTokenProviderDispatcher.class));
+		postProcessor.setAccessTokenCache(beanFactory.getBeanProvider(AccessTokenCache.class));
+		OAuth2FeignRequestInterceptor defaults = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				new ClientCredentialsResourceDetails());
+		OAuth2FeignRequestInterceptor custom = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				new ClientCredentialsResourceDetails());
+		InMemoryAccessTokenCache customCache = new InMemoryAccessTokenCache();
+		custom.setAccessTokenCache(customCache);
+
+		postProcessor.postProcessAfterInitialization(defaults, "defaults");
+		postProcessor.postProcessAfterInitialization(custom, "custom");
+
+		Assert.assertSame(cache, ReflectionTestUtils.getField(defaults, "accessTokenCache"));
+		Assert.assertSame(customCache, ReflectionTestUtils.getField(custom, "accessTokenCache"));
+	}
+
+	@Test
+	public void postProcessorSharesAcquirerWithInterceptorsWithoutOne() {
+		CoalescingAccessTokenAcquirer acquirer = new CoalescingAccessTokenAcquirer();
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean("coalescingAccessTokenAcquirer", acquirer);
+		OAuth2FeignRequestInterceptorPostProcessor postProcessor = new OAuth2FeignRequestInterceptorPostProcessor(
+				beanFactory.getBeanProvider(AccessTokenProviderDispatcher.class));
+		postProcessor.setAccessTokenAcquirer(beanFactory.getBeanProvider(CoalescingAccessTokenAcquirer.class));
+		OAuth2FeignRequestInterceptor defaults = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				new ClientCredentialsResourceDetails());
+		OAuth2FeignRequestInterceptor custom = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				new ClientCredentialsResourceDetails());
+		CoalescingAccessTokenAcquirer customAcquirer = new CoalescingAccessTokenAcquirer();
+		custom.setAccessTokenAcquirer(customAcquirer);
+
+		postProcessor.postProcessAfterInitialization(defaults, "defaults");
+		postProcessor.postProcessAfterInitialization(custom, "custom");
+
+		Assert.assertSame(acquirer, ReflectionTestUtils.getField(defaults, "accessTokenAcquirer"));
+		Assert.assertSame(customAcquirer, ReflectionTestUtils.getField(custom, "accessTokenAcquirer"));
+	}
+
+	@Test
+	public void postProcessorSharesRefreshSchedulerWithInterceptorsWithoutOne() {
+		AccessTokenRefreshScheduler scheduler = new AccessTokenRefreshScheduler(1);
+		try {
+			StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+			beanFactory.addBean("accessTokenRefreshScheduler", scheduler);
+			OAuth2FeignRequestInterceptorPostProcessor postProcessor = new OAuth2FeignRequestInterceptorPostProcessor(
+					beanFactory.getBeanProvider(AccessTokenProviderDispatcher.class));
+			postProcessor
+					.setAccessTokenRefreshScheduler(beanFactory.getBeanProvider(AccessTokenRefreshScheduler.class));
+			OAuth2FeignRequestInterceptor defaults = new OAuth2FeignRequestInterceptor(
+					new DefaultOAuth2ClientContext(), new ClientCredentialsResourceDetails());
+
+			postProcessor.postProcessAfterInitialization(defaults, "defaults");
+
+			Assert.assertSame(scheduler, ReflectionTestUtils.getField(defaults, "accessTokenRefreshScheduler"));
+		}
+		finally {
+			scheduler.destroy();
+		}
+	}
+
+	@Test
+	public void postProcessorSharesStaleFallbackWithInterceptorsWithoutOne() {
+		StaleAccessTokenFallback fallback = new StaleAccessTokenFallback();
+		StaleAccessTokenFallback customFallback = new StaleAccessTokenFallback();
+		try {
+			StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+			beanFactory.addBean("staleAccessTokenFallback", fallback);
+			OAuth2FeignRequestInterceptorPostProcessor postProcessor = new OAuth2FeignRequestInterceptorPostProcessor(
+					beanFactory.getBeanProvider(AccessTokenProviderDispatcher.class));
+			postProcessor.setStaleAccessTokenFallback(beanFactory.getBeanProvider(StaleAccessTokenFallback.class));
+			OAuth2FeignRequestInterceptor defaults = new OAuth2FeignRequestInterceptor(
+					new DefaultOAuth2ClientContext(), new ClientCredentialsResourceDetails());
+			OAuth2FeignRequestInterceptor custom = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+					new ClientCredentialsResourceDetails());
+			custom.setStaleAccessTokenFallback(customFallback);
+
+			postProcessor.postProcessAfterInitialization(defaults, "defaults");
+			postProcessor.postProcessAfterInitialization(custom, "custom");
+
+			Assert.assertSame(fallback, ReflectionTestUtils.getField(defaults, "staleAccessTokenFallback"));
+			Assert.assertSame(customFallback, ReflectionTestUtils.getField(custom, "staleAccessTokenFallback"));
+		}
+		finally {
+			fallback.destroy();
+			customFallback.destroy();
+		}
+	}
+
+	@Test
+	public void postProcessorSharesMetricsWithInterceptorsWithoutThem() {
+		OAuth2ClientMetrics metrics = mock(OAuth2ClientMetrics.class);
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean("oauth2ClientMetrics", metrics);
+		OAuth2FeignRequestInterceptorPostProcessor postProcessor = new OAuth2FeignRequestInterceptorPostProcessor(
+				beanFactory.getBeanProvider(AccessTokenProviderDispatcher.class));
+		postProcessor.setMetrics(beanFactory.getBeanProvider(OAuth2ClientMetrics.class));
+		OAuth2FeignRequestInterceptor defaults = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				new ClientCredentialsResourceDetails());
+		OAuth2FeignRequestInterceptor custom = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				new ClientCredentialsResourceDetails());
+		OAuth2ClientMetrics customMetrics = mock(OAuth2ClientMetrics.class);
+		custom.setMetrics(customMetrics);
+
+		postProcessor.postProcessAfterInitialization(defaults, "defaults");
+		postProcessor.postProcessAfterInitialization(custom, "custom");
+
+		Assert.assertSame(metrics, ReflectionTestUtils.getField(defaults, "metrics"));
+		Assert.assertSame(customMetrics, ReflectionTestUtils.getField(custom, "metrics"));
+	}
+
+	@Test
+	public void useExpiredTokenWhenAcquisitionFails() {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId("client");
+		resource.setAccessTokenUri("https://example.com/token");
+		DefaultOAuth2AccessToken expired = new DefaultOAuth2AccessToken("EXPIRED");
+		expired.setExpiration(new Date(System.currentTimeMillis() - 1000));
+		AccessTokenProvider accessTokenProvider = mock(AccessTokenProvider.class);
+		when(accessTokenProvider.obtainAccessToken(any(), any())).thenReturn(expired)
+				.thenThrow(new OAuth2AccessDeniedException("unavailable"));
+		StaleAccessTokenFallback fallback = new StaleAccessTokenFallback();
+		OAuth2FeignRequestInterceptor interceptor = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				resource);
+		interceptor.setAccessTokenProvider(accessTokenProvider);
+		interceptor.setStaleAccessTokenFallback(fallback);
+
+		try {
+			Assert.assertEquals("EXPIRED", interceptor.getToken().getValue());
+			Assert.assertEquals("EXPIRED", interceptor.getToken().getValue());
+			// The second acquisition runs in the background
+			verify(accessTokenProvider, timeout(1000).times(2)).obtainAccessToken(any(), any());
+		}
+		finally {
+			fallback.destroy();
+		}
+	}
+
+	@Test
+	public void countFailureOncePerSharedAcquisition() throws Exception {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId("client");
+		resource.setAccessTokenUri("https://example.com/token");
+		CountDownLatch release = new CountDownLatch(1);
+		AccessTokenProvider accessTokenProvider = mock(AccessTokenProvider.class);
+		when(accessTokenProvider.obtainAccessToken(any(), any())).thenAnswer((invocation) -> {
+			release.await();
+			throw new OAuth2AccessDeniedException("unavailable");
+		}).thenReturn(new DefaultOAuth2AccessToken("FOO"));
+		StaleAccessTokenFallback fallback = new StaleAccessTokenFallback();
+		fallback.setFailureThreshold(2);
+		OAuth2FeignRequestInterceptor interceptor = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				resource);
+		interceptor.setAccessTokenProvider(accessTokenProvider);
+		interceptor.setAccessTokenAcquirer(new CoalescingAccessTokenAcquirer());
+		interceptor.setStaleAccessTokenFallback(fallback);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+
+		try {
+			List<Future<OAuth2AccessToken>> callers = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				callers.add(executor.submit(interceptor::getToken));
+			}
+			Thread.sleep(200);
+			release.countDown();
+			for (Future<OAuth2AccessToken> caller : callers) {
+				try {
+					caller.get(5, TimeUnit.SECONDS);
+					Assert.fail("Expected the shared acquisition to fail");
+				}
+				catch (ExecutionException e) {
+					Assert.assertTrue(e.getCause() instanceof OAuth2AccessDeniedException);
+				}
+			}
+
+			// One failure is below the threshold, so the circuit is still closed
+			Assert.assertEquals("FOO", interceptor.getToken().getValue());
+			verify(accessTokenProvider, times(2)).obtainAccessToken(any(), any());
+		}
+		finally {
+			executor.shutdownNow();
+			fallback.destroy();
+		}
+	}
+
+	@Test
+	public void renderAuthorizationHeaderOncePerToken() {
+		OAuth2ClientContext oAuth2ClientContext = mock(OAuth2ClientContext.class);
+		OAuth2AccessToken token = new MockOAuth2AccessToken("FIRST");
+		when(oAuth2ClientContext.getAccessToken()).thenReturn(token);
+		OAuth2FeignRequestInterceptor oAuth2FeignRequestInterceptor = new OAuth2FeignRequestInterceptor(
+				oAuth2ClientContext, new BaseOAuth2ProtectedResourceDetails());
+
+		String first = oAuth2FeignRequestInterceptor.extract("Bearer");
+		Assert.assertEquals("Bearer FIRST", first);
+		Assert.assertSame("Header value must be reused for the same token", first,
+				oAuth2FeignRequestInterceptor.extract("Bearer"));
+
+		when(oAuth2ClientContext.getAccessToken()).thenReturn(new MockOAuth2AccessToken("SECOND"));
+		Assert.assertEquals("Bearer SECOND", oAuth2FeignRequestInterceptor.extract("Bearer"));
+		Assert.assertEquals("token SECOND", oAuth2FeignRequestInterceptor.extract("token"));
+	}
+
+	@Test
+	public void acquireSharedTokenWithoutHoldingMonitors() throws Exception {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId("client");
+		resource.setAccessTokenUri("https://example.com/token");
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		List<MonitorInfo> held = new CopyOnWriteArrayList<>();
+		CountDownLatch acquiring = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		// Not a mock, so that the test framework holds no monitors while the token
+		// endpoint is "called"
+		AccessTokenProvider accessTokenProvider = new BlockingAccessTokenProvider(() -> {
+			// A virtual thread holding a monitor here would pin its carrier thread
+			held.addAll(Arrays.asList(lockedMonitors(threads, Thread.currentThread())));
+			acquiring.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return new DefaultOAuth2AccessToken("SHARED");
+		});
+		InMemoryAccessTokenCache cache = new InMemoryAccessTokenCache();
+		CoalescingAccessTokenAcquirer acquirer = new CoalescingAccessTokenAcquirer();
+		AtomicReference<Thread> followerThread = new AtomicReference<>();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<OAuth2AccessToken> leader = executor
+					.submit(() -> sharedTokenInterceptor(resource, accessTokenProvider, cache, acquirer).getToken());
+			Assert.assertTrue(acquiring.await(5, TimeUnit.SECONDS));
+			Future<OAuth2AccessToken> follower = executor.submit(() -> {
+				followerThread.set(Thread.currentThread());
+				return sharedTokenInterceptor(resource, accessTokenProvider, cache, acquirer).getToken();
+			});
+			ThreadInfo waiting = awaitWaiting(threads, followerThread);
+			Assert.assertEquals(Thread.State.TIMED_WAITING, waiting.getThreadState());
+			Assert.assertEquals(0, waiting.getLockedMonitors().length);
+			release.countDown();
+
+			Assert.assertEquals("SHARED", leader.get(5, TimeUnit.SECONDS).getValue());
+			Assert.assertEquals("SHARED", follower.get(5, TimeUnit.SECONDS).getValue());
+			Assert.assertTrue("Monitors held while acquiring a token: " + held, held.isEmpty());
+		}
+		finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void acquireSharedTokenFromTokenEndpointWithoutHoldingMonitors() throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		AtomicReference<Thread> clientThread = new AtomicReference<>();
+		List<MonitorInfo> held = new CopyOnWriteArrayList<>();
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/token", (exchange) -> {
+			StreamUtils.drain(exchange.getRequestBody());
+			// The request has been sent, so the client is (about to be) waiting for the
+			// response, which is where a virtual thread would be pinned by a monitor
+			held.addAll(Arrays.asList(awaitResponseRead(threads, clientThread.get()).getLockedMonitors()));
+			byte[] body = "{\"access_token\":\"SHARED\",\"token_type\":\"bearer\",\"expires_in\":60}"
+					.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+			resource.setClientId("client");
+			resource.setClientSecret("secret");
+			resource.setAccessTokenUri("http://localhost:" + server.getAddress().getPort() + "/token");
+			Future<OAuth2AccessToken> token = executor.submit(() -> {
+				clientThread.set(Thread.currentThread());
+				return sharedTokenInterceptor(resource, new ClientCredentialsAccessTokenProvider(),
+						new InMemoryAccessTokenCache(), new CoalescingAccessTokenAcquirer()).getToken();
+			});
+
+			Assert.assertEquals("SHARED", token.get(5, TimeUnit.SECONDS).getValue());
+			// The JDK's own HttpURLConnection synchronizes while it reads the response (up
+			// to JDK 17), which only another request factory can avoid. None of the
+			// monitors may be taken by the interceptor or Spring.
+			List<String> notJdk = new ArrayList<>();
+			for (MonitorInfo monitor : held) {
+				if (!monitor.getClassName().matches("(java|javax|jdk|sun)\\..*")) {
+					notJdk.add(monitor.getClassName());
+				}
+			}
+			Assert.assertTrue("Monitors held while acquiring a token: " + notJdk, notJdk.isEmpty());
+		}
+		finally {
+			executor.shutdownNow();
+			server.stop(0);
+		}
+	}
+
+	private OAuth2FeignRequestInterceptor sharedTokenInterceptor(ClientCredentialsResourceDetails resource,
+			AccessTokenProvider accessTokenProvider, InMemoryAccessTokenCache cache,
+			CoalescingAccessTokenAcquirer acquirer) {
+		OAuth2FeignRequestInterceptor interceptor = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				resource);
+		interceptor.setAccessTokenProvider(accessTokenProvider);
+		interceptor.setAccessTokenCache(cache);
+		interceptor.setAccessTokenAcquirer(acquirer);
+		return interceptor;
+	}
+
+	private static MonitorInfo[] lockedMonitors(ThreadMXBean threads, Thread thread) {
+		return threads.getThreadInfo(new long[] { thread.getId() }, true, false)[0].getLockedMonitors();
+	}
+
+	private static ThreadInfo awaitResponseRead(ThreadMXBean threads, Thread thread) {
+		long deadline = System.currentTimeMillis() + 5000;
+		ThreadInfo info = threads.getThreadInfo(new long[] { thread.getId() }, true, false)[0];
+		while (System.currentTimeMillis() < deadline) {
+			for (StackTraceElement element : info.getStackTrace()) {
+				if (element.getMethodName().startsWith("getInputStream")) {
+					return info;
+				}
+			}
+			Thread.yield();
+			info = threads.getThreadInfo(new long[] { thread.getId() }, true, false)[0];
+		}
+		return info;
+	}
+
+	private static ThreadInfo awaitWaiting(ThreadMXBean threads, AtomicReference<Thread> thread) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < deadline) {
+			if (thread.get() != null) {
+				ThreadInfo info = threads.getThreadInfo(new long[] { thread.get().getId() }, true, false)[0];
+				if (info.getThreadState() != Thread.State.RUNNABLE) {
+					return info;
+				}
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError("Thread did not start waiting");
+	}
+
+	private interface TokenEndpoint {
+
+		OAuth2AccessToken call() throws Exception;
+
+	}
+
+	private static class BlockingAccessTokenProvider implements AccessTokenProvider {
+
+		private final TokenEndpoint endpoint;
+
+		BlockingAccessTokenProvider(TokenEndpoint endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		@Override
+		public OAuth2AccessToken obtainAccessToken(OAuth2ProtectedResourceDetails details,
+				AccessTokenRequest parameters) {
+			try {
+				return this.endpoint.call();
+			}
+			catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public boolean supportsResource(OAuth2ProtectedResourceDetails resource) {
+			return true;
+		}
+
+		@Override
+		public OAuth2AccessToken refreshAccessToken(OAuth2ProtectedResourceDetails resource,
+				OAuth2RefreshToken refreshToken, AccessTokenRequest request) {
+			return null;
+		}
+
+		@Override
+		public boolean supportsRefresh(OAuth2ProtectedResourceDetails resource) {
+			return false;
+		}
+
+	}
+
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.hedging;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two local instances of a user info endpoint, one of them slow, behind a round robin
+ * load balancer.
+ */
+public class HedgingClientHttpRequestInterceptorTests {
+
+	private static final long SLOW_MILLIS = 500;
+
+	private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+
+	private HttpServer slow;
+
+	private HttpServer fast;
+
+	private LoadBalancerClient loadBalancer = mock(LoadBalancerClient.class);
+
+	private HedgingClientHttpRequestInterceptor interceptor;
+
+	@Before
+	public void setUp() throws Exception {
+		slow = server("slow", SLOW_MILLIS);
+		fast = server("fast", 0);
+		ServiceInstance[] instances = { instance(slow), instance(fast) };
+		AtomicInteger next = new AtomicInteger();
+		when(loadBalancer.choose("auth")).thenAnswer((invocation) -> instances[next.getAndIncrement() % 2]);
+		when(loadBalancer.reconstructURI(any(), any())).thenAnswer((invocation) -> {
+			ServiceInstance instance = invocation.getArgument(0);
+			URI original = invocation.getArgument(1);
+			return URI.create("http://" + instance.getHost() + ":" + instance.getPort() + original.getPath());
+		});
+	}
+
+	@After
+	public void close() {
+		if (interceptor != null) {
+			interceptor.destroy();
+		}
+		slow.stop(0);
+		fast.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	@Test
+	public void hedgeAnswersBeforeSlowInstance() {
+		RestTemplate restTemplate = restTemplate(new RetryBudget(0.1, 10));
+
+		long start = System.nanoTime();
+		String body = restTemplate.getForObject("http://auth/user", String.class);
+
+		assertThat(body).isEqualTo("fast");
+		assertThat(Duration.ofNanos(System.nanoTime() - start).toMillis()).isLessThan(SLOW_MILLIS);
+	}
+
+	@Test
+	public void noHedgeWithoutBudget() {
+		RestTemplate restTemplate = restTemplate(new RetryBudget(0, 0));
+
+		long start = System.nanoTime();
+		String body = restTemplate.getForObject("http://auth/user", String.class);
+
+		assertThat(body).isEqualTo("slow");
+		assertThat(Duration.ofNanos(System.nanoTime() - start).toMillis()).isGreaterThanOrEqualTo(SLOW_MILLIS);
+	}
+
+	@Test
+	public void tailLatencyReduced() {
+		long hedged = maxLatencyMillis(restTemplate(new RetryBudget(1, 10)), 6);
+		interceptor.destroy();
+		long unhedged = maxLatencyMillis(restTemplate(new RetryBudget(0, 0)), 6);
+
+		assertThat(unhedged).isGreaterThanOrEqualTo(SLOW_MILLIS);
+		assertThat(hedged).isLessThan(SLOW_MILLIS);
+	}
+
+	@Test
+	public void failsAfterTimeout() {
+		RestTemplate restTemplate = restTemplate(new RetryBudget(0, 0));
+		interceptor.setTimeout(Duration.ofMillis(100));
+		when(loadBalancer.choose("auth")).thenReturn(instance(slow));
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> restTemplate.getForObject("http://auth/user", String.class))
+				.isInstanceOf(ResourceAccessException.class).hasCauseInstanceOf(SocketTimeoutException.class);
+		assertThat(Duration.ofNanos(System.nanoTime() - start).toMillis()).isLessThan(SLOW_MILLIS);
+	}
+
+	@Test
+	public void noHedgeWithoutThreads() throws Exception {
+		interceptor = new HedgingClientHttpRequestInterceptor(new SimpleClientHttpRequestFactory(), loadBalancer,
+				new RetryBudget(1, 10), 0.95, 1);
+		interceptor.setInitialDelay(Duration.ofMillis(50));
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.getInterceptors().add(interceptor);
+		when(loadBalancer.choose("auth")).thenReturn(instance(slow));
+		Future<String> busy = serverExecutor.submit(() -> restTemplate.getForObject("http://auth/user", String.class));
+		Thread.sleep(SLOW_MILLIS / 5);
+
+		long start = System.nanoTime();
+		assertThat(restTemplate.getForObject("http://auth/user", String.class)).isEqualTo("slow");
+		assertThat(Duration.ofNanos(System.nanoTime() - start).toMillis()).isGreaterThanOrEqualTo(SLOW_MILLIS);
+		assertThat(busy.get()).isEqualTo("slow");
+	}
+
+	private long maxLatencyMillis(RestTemplate restTemplate, int requests) {
+		long max = 0;
+		for (int i = 0; i < requests; i++) {
+			long start = System.nanoTime();
+			restTemplate.getForObject("http://auth/user", String.class);
+			max = Math.max(max, Duration.ofNanos(System.nanoTime() - start).toMillis());
+		}
+		return max;
+	}
+
+	private RestTemplate restTemplate(RetryBudget budget) {
+		interceptor = new HedgingClientHttpRequestInterceptor(new SimpleClientHttpRequestFactory(), loadBalancer,
+				budget, 0.95);
+		interceptor.setInitialDelay(Duration.ofMillis(50));
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.getInterceptors().add(interceptor);
+		return restTemplate;
+	}
+
+	private HttpServer server(String name, long delayMillis) throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(serverExecutor);
+		server.createContext("/user", (exchange) -> {
+			try {
+				Thread.sleep(delayMillis);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] body = name.getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	private static ServiceInstance instance(HttpServer server) {
+		return new DefaultServiceInstance(server.getAddress().getPort() + "", "auth", "localhost",
+				server.getAddress().getPort(), false);
+	}
+
+}
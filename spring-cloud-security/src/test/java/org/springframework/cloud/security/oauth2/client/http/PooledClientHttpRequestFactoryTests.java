@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.http;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PooledClientHttpRequestFactoryTests {
+
+	private HttpServer server;
+
+	private List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+
+	private PooledClientHttpRequestFactory requestFactory = new PooledClientHttpRequestFactory(
+			new OAuth2HttpClientProperties());
+
+	@Before
+	public void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/user", (exchange) -> {
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			byte[] body = "{\"id\":\"user\"}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void close() throws Exception {
+		requestFactory.destroy();
+		server.stop(0);
+	}
+
+	@Test
+	public void connectionReused() {
+		RestTemplate restTemplate = new RestTemplate(requestFactory);
+		String uri = "http://localhost:" + server.getAddress().getPort() + "/user";
+
+		assertThat(restTemplate.getForObject(uri, String.class)).isEqualTo("{\"id\":\"user\"}");
+		assertThat(restTemplate.getForObject(uri, String.class)).isEqualTo("{\"id\":\"user\"}");
+
+		assertThat(clientPorts).hasSize(2);
+		assertThat(clientPorts.get(1)).isEqualTo(clientPorts.get(0));
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.cloud.security.oauth2.client.AccessTokenContextRelay;
+import org.springframework.cloud.security.oauth2.client.feign.OAuth2FeignRequestInterceptor;
+import org.springframework.cloud.security.oauth2.client.token.InMemoryAccessTokenCache;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.token.AccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MicrometerOAuth2ClientMetricsTests {
+
+	private SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private MicrometerOAuth2ClientMetrics metrics = new MicrometerOAuth2ClientMetrics(registry);
+
+	@After
+	public void close() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	public void acquisitionsAndCacheLookups() {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setId("orders");
+		resource.setClientId("client");
+		resource.setAccessTokenUri("https://example.com/token");
+		AccessTokenProvider accessTokenProvider = mock(AccessTokenProvider.class);
+		when(accessTokenProvider.obtainAccessToken(any(), any())).thenReturn(new DefaultOAuth2AccessToken("FOO"));
+		InMemoryAccessTokenCache cache = new InMemoryAccessTokenCache();
+
+		interceptor(resource, accessTokenProvider, cache).getToken();
+		interceptor(resource, accessTokenProvider, cache).getToken();
+
+		assertThat(registry.get("spring.cloud.security.oauth2.token.acquisitions").tag("resource", "orders")
+				.tag("grant.type", "client_credentials").tag("outcome", "success").timer().count()).isEqualTo(1);
+		assertThat(registry.get("spring.cloud.security.oauth2.token.cache").tag("result", "miss").counter().count())
+				.isEqualTo(1);
+		assertThat(registry.get("spring.cloud.security.oauth2.token.cache").tag("result", "hit").counter().count())
+				.isEqualTo(1);
+	}
+
+	@Test
+	public void failedAcquisition() {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setId("orders");
+		AccessTokenProvider accessTokenProvider = mock(AccessTokenProvider.class);
+		when(accessTokenProvider.obtainAccessToken(any(), any())).thenThrow(new IllegalStateException("planned"));
+
+		assertThatThrownBy(() -> interceptor(resource, accessTokenProvider, null).getToken())
+				.isInstanceOf(IllegalStateException.class);
+
+		assertThat(registry.get("spring.cloud.security.oauth2.token.acquisitions").tag("outcome", "failure").timer()
+				.count()).isEqualTo(1);
+	}
+
+	@Test
+	public void relaySkippedWithoutAuthentication() {
+		AccessTokenContextRelay relay = new AccessTokenContextRelay(new DefaultOAuth2ClientContext());
+		relay.setMetrics(metrics);
+
+		assertThat(relay.copyToken()).isFalse();
+
+		assertThat(registry.get("spring.cloud.security.oauth2.token.relay").tag("result", "skipped").counter().count())
+				.isEqualTo(1);
+		assertThat(registry.get("spring.cloud.security.oauth2.token.relay").tag("result", "copied").counter().count())
+				.isEqualTo(0);
+	}
+
+	private OAuth2FeignRequestInterceptor interceptor(ClientCredentialsResourceDetails resource,
+			AccessTokenProvider accessTokenProvider, InMemoryAccessTokenCache cache) {
+		OAuth2FeignRequestInterceptor interceptor = new OAuth2FeignRequestInterceptor(new DefaultOAuth2ClientContext(),
+				resource);
+		interceptor.setAccessTokenProvider(accessTokenProvider);
+		interceptor.setAccessTokenCache(cache);
+		interceptor.setMetrics(metrics);
+		return interceptor;
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.reactive;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCache;
+import org.springframework.cloud.security.oauth2.client.token.AccessTokenCacheKey;
+import org.springframework.cloud.security.oauth2.client.token.InMemoryAccessTokenCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClientCredentialsReactiveAccessTokenSourceTests {
+
+	private AtomicInteger tokenRequests = new AtomicInteger();
+
+	private WebClient tokenEndpoint = WebClient.builder().exchangeFunction(request -> {
+		tokenRequests.incrementAndGet();
+		return Mono.just(ClientResponse.create(HttpStatus.OK)
+				.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+				.body("{\"access_token\":\"FOO\",\"token_type\":\"bearer\",\"expires_in\":3600}").build())
+				.delayElement(Duration.ofMillis(50));
+	}).build();
+
+	private ClientCredentialsReactiveAccessTokenSource source = new ClientCredentialsReactiveAccessTokenSource(
+			tokenEndpoint, new InMemoryAccessTokenCache());
+
+	@Test
+	public void tokenIsCached() {
+		OAuth2AccessToken first = source.getToken(resource()).block();
+		OAuth2AccessToken second = source.getToken(resource()).block();
+		assertThat(first.getValue()).isEqualTo("FOO");
+		assertThat(second).isSameAs(first);
+		assertThat(tokenRequests.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void concurrentRequestsAreCoalesced() {
+		List<OAuth2AccessToken> tokens = Mono
+				.zip(source.getToken(resource()), source.getToken(resource()), source.getToken(resource()))
+				.map(tuple -> Arrays.asList(tuple.getT1(), tuple.getT2(), tuple.getT3())).block();
+		assertThat(tokens).extracting(OAuth2AccessToken::getValue).containsOnly("FOO");
+		assertThat(tokenRequests.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void blockingCacheCalledOffCallingThread() {
+		List<String> threads = new CopyOnWriteArrayList<>();
+		InMemoryAccessTokenCache tokens = new InMemoryAccessTokenCache();
+		AccessTokenCache blocking = new AccessTokenCache() {
+
+			@Override
+			public OAuth2AccessToken get(AccessTokenCacheKey key) {
+				threads.add(Thread.currentThread().getName());
+				return tokens.get(key);
+			}
+
+			@Override
+			public void put(AccessTokenCacheKey key, OAuth2AccessToken accessToken) {
+				threads.add(Thread.currentThread().getName());
+				tokens.put(key, accessToken);
+			}
+
+			@Override
+			public void evict(AccessTokenCacheKey key) {
+				tokens.evict(key);
+			}
+
+		};
+		ClientCredentialsReactiveAccessTokenSource source = new ClientCredentialsReactiveAccessTokenSource(
+				tokenEndpoint, blocking);
+
+		assertThat(source.getToken(resource()).block().getValue()).isEqualTo("FOO");
+		assertThat(source.getToken(resource()).block().getValue()).isEqualTo("FOO");
+
+		assertThat(threads).hasSize(4).allMatch(thread -> thread.startsWith("boundedElastic"));
+		assertThat(tokenRequests.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void filterAddsBearerToken() {
+		List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+		WebClient client = WebClient.builder()
+				.filter(new OAuth2AccessTokenExchangeFilterFunction(source, resource()))
+				.exchangeFunction(request -> {
+					requests.add(request);
+					return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+				}).build();
+
+		client.get().uri("https://example.com/orders").exchangeToMono(response -> Mono.just(response.statusCode()))
+				.block();
+
+		assertThat(requests).hasSize(1);
+		assertThat(requests.get(0).headers().getFirst(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer FOO");
+	}
+
+	@Test
+	public void clientCredentialsFormEncoded() {
+		List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+		WebClient tokenEndpoint = WebClient.builder().exchangeFunction(request -> {
+			requests.add(request);
+			return Mono.just(ClientResponse.create(HttpStatus.OK)
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.body("{\"access_token\":\"FOO\",\"token_type\":\"bearer\",\"expires_in\":3600}").build());
+		}).build();
+		ClientCredentialsResourceDetails resource = resource();
+		resource.setClientId("my client");
+		resource.setClientSecret("s3cret:+/");
+
+		new ClientCredentialsReactiveAccessTokenSource(tokenEndpoint, new InMemoryAccessTokenCache())
+				.getToken(resource).block();
+
+		String credentials = Base64.getEncoder()
+				.encodeToString("my+client:s3cret%3A%2B%2F".getBytes(StandardCharsets.UTF_8));
+		assertThat(requests).hasSize(1);
+		assertThat(requests.get(0).headers().getFirst(HttpHeaders.AUTHORIZATION)).isEqualTo("Basic " + credentials);
+	}
+
+	private static ClientCredentialsResourceDetails resource() {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId("client");
+		resource.setClientSecret("secret");
+		resource.setAccessTokenUri("https://example.com/token");
+		return resource;
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.token.AccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.code.AuthorizationCodeResourceDetails;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.cloud.security.oauth2.client.token.RedisAccessTokenCacheTests.resource;
+
+public class AccessTokenPrewarmerTests {
+
+	private InMemoryAccessTokenCache cache = new InMemoryAccessTokenCache();
+
+	private AccessTokenProvider accessTokenProvider = mock(AccessTokenProvider.class);
+
+	@Test
+	public void acquiresOncePerCredentials() throws Exception {
+		when(accessTokenProvider.obtainAccessToken(any(), any())).thenReturn(new DefaultOAuth2AccessToken("FOO"));
+		AccessTokenPrewarmer prewarmer = prewarmer(resource("client"), resource("client"), resource("other"),
+				new AuthorizationCodeResourceDetails());
+
+		assertThat(prewarmer.prewarm()).isEqualTo(2);
+		assertThat(cache.get(resource("client")).getValue()).isEqualTo("FOO");
+		assertThat(cache.get(resource("other")).getValue()).isEqualTo("FOO");
+		verify(accessTokenProvider, times(2)).obtainAccessToken(any(), any());
+	}
+
+	@Test
+	public void cachedTokensNotAcquired() throws Exception {
+		cache.put(resource("client"), new DefaultOAuth2AccessToken("CACHED"));
+
+		assertThat(prewarmer(resource("client")).prewarm()).isEqualTo(0);
+		verify(accessTokenProvider, never()).obtainAccessToken(any(), any());
+	}
+
+	@Test
+	public void failuresDoNotStopOthers() throws Exception {
+		when(accessTokenProvider.obtainAccessToken(argThat((resource) -> "client".equals(resource.getClientId())),
+				any())).thenThrow(new IllegalStateException("planned"));
+		when(accessTokenProvider.obtainAccessToken(argThat((resource) -> "other".equals(resource.getClientId())),
+				any())).thenReturn(new DefaultOAuth2AccessToken("FOO"));
+
+		assertThat(prewarmer(resource("client"), resource("other")).prewarm()).isEqualTo(1);
+		assertThat(cache.get(resource("client"))).isNull();
+		assertThat(cache.get(resource("other"))).isNotNull();
+	}
+
+	@Test
+	public void slowAcquisitionsAbandoned() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(accessTokenProvider.obtainAccessToken(any(), any())).thenAnswer((invocation) -> {
+			release.await();
+			return new DefaultOAuth2AccessToken("FOO");
+		});
+		AccessTokenPrewarmer prewarmer = prewarmer(resource("client"));
+		prewarmer.setTimeout(Duration.ofMillis(100));
+
+		long start = System.nanoTime();
+		assertThat(prewarmer.prewarm()).isEqualTo(0);
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+		release.countDown();
+	}
+
+	@Test
+	public void acquiresThroughClients() throws Exception {
+		AtomicInteger acquisitions = new AtomicInteger();
+		AccessTokenPrewarmer prewarmer = prewarmer(resource("client"));
+		prewarmer.addAcquisition(resource("client"), () -> {
+			acquisitions.incrementAndGet();
+			DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken("CLIENT");
+			cache.put(resource("client"), accessToken);
+			return accessToken;
+		});
+		prewarmer.addAcquisition(resource("feign"), () -> {
+			acquisitions.incrementAndGet();
+			return new DefaultOAuth2AccessToken("FEIGN");
+		});
+
+		assertThat(prewarmer.prewarm()).isEqualTo(2);
+		assertThat(acquisitions).hasValue(2);
+		assertThat(cache.get(resource("client")).getValue()).isEqualTo("CLIENT");
+		verify(accessTokenProvider, never()).obtainAccessToken(any(), any());
+	}
+
+	@Test
+	public void acquiresThroughAcquirer() throws Exception {
+		when(accessTokenProvider.obtainAccessToken(any(), any())).thenReturn(new DefaultOAuth2AccessToken("FOO"));
+		CoalescingAccessTokenAcquirer acquirer = mock(CoalescingAccessTokenAcquirer.class);
+		when(acquirer.acquire(any(), any()))
+				.thenAnswer((invocation) -> invocation.<Supplier<OAuth2AccessToken>>getArgument(1).get());
+		AccessTokenPrewarmer prewarmer = prewarmer(resource("client"));
+		prewarmer.setAccessTokenAcquirer(acquirer);
+
+		assertThat(prewarmer.prewarm()).isEqualTo(1);
+		assertThat(cache.get(resource("client")).getValue()).isEqualTo("FOO");
+		verify(acquirer).acquire(eq(AccessTokenCacheKey.of(resource("client"))), any());
+	}
+
+	private AccessTokenPrewarmer prewarmer(OAuth2ProtectedResourceDetails... resources) {
+		AccessTokenPrewarmer prewarmer = new AccessTokenPrewarmer(cache, Arrays.asList(resources));
+		prewarmer.setAccessTokenProvider(accessTokenProvider);
+		return prewarmer;
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.resource.OAuth2AccessDeniedException;
+import org.springframework.security.oauth2.client.token.AccessTokenProvider;
+import org.springframework.security.oauth2.client.token.DefaultAccessTokenRequest;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.client.token.grant.password.ResourceOwnerPasswordResourceDetails;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.cloud.security.oauth2.client.token.RedisAccessTokenCacheTests.resource;
+
+public class AccessTokenProviderDispatcherTests {
+
+	private AccessTokenProvider password = mock(AccessTokenProvider.class);
+
+	private AccessTokenProvider clientCredentials = mock(AccessTokenProvider.class);
+
+	private AccessTokenProviderDispatcher dispatcher = new AccessTokenProviderDispatcher(
+			Arrays.asList(password, clientCredentials));
+
+	@Test
+	public void providerResolvedOncePerResourceType() {
+		when(clientCredentials.supportsResource(isA(ClientCredentialsResourceDetails.class))).thenReturn(true);
+		when(clientCredentials.obtainAccessToken(any(), any())).thenReturn(new DefaultOAuth2AccessToken("FOO"));
+
+		assertThat(dispatcher.obtainAccessToken(resource("client"), new DefaultAccessTokenRequest()).getValue())
+				.isEqualTo("FOO");
+		assertThat(dispatcher.obtainAccessToken(resource("other"), new DefaultAccessTokenRequest()).getValue())
+				.isEqualTo("FOO");
+
+		verify(password, times(1)).supportsResource(any());
+		verify(clientCredentials, times(1)).supportsResource(any());
+		verify(password, never()).obtainAccessToken(any(), any());
+		verify(clientCredentials, times(2)).obtainAccessToken(any(), any());
+	}
+
+	@Test
+	public void resourceTypesDispatchedSeparately() {
+		when(password.supportsResource(isA(ResourceOwnerPasswordResourceDetails.class))).thenReturn(true);
+		when(clientCredentials.supportsResource(isA(ClientCredentialsResourceDetails.class))).thenReturn(true);
+		when(clientCredentials.obtainAccessToken(any(), any())).thenReturn(new DefaultOAuth2AccessToken("FOO"));
+
+		assertThat(dispatcher.supportsResource(resource("client"))).isTrue();
+		assertThat(dispatcher.supportsResource(new ResourceOwnerPasswordResourceDetails())).isTrue();
+		dispatcher.obtainAccessToken(resource("client"), new DefaultAccessTokenRequest());
+
+		verify(clientCredentials).obtainAccessToken(any(), any());
+		verify(password, never()).obtainAccessToken(any(), any());
+	}
+
+	@Test
+	public void sharedPerRequestFactory() {
+		ClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+
+		assertThat(AccessTokenProviderDispatcher.of(requestFactory))
+				.isSameAs(AccessTokenProviderDispatcher.of(requestFactory))
+				.isNotSameAs(AccessTokenProviderDispatcher.of(new SimpleClientHttpRequestFactory()))
+				.isNotSameAs(AccessTokenProviderDispatcher.of(null));
+		assertThat(AccessTokenProviderDispatcher.of(null)).isSameAs(AccessTokenProviderDispatcher.of(null));
+	}
+
+	@Test
+	public void unsupportedResource() {
+		assertThatThrownBy(() -> dispatcher.obtainAccessToken(resource("client"), new DefaultAccessTokenRequest()))
+				.isInstanceOf(OAuth2AccessDeniedException.class);
+		assertThat(dispatcher.supportsResource(resource("client"))).isFalse();
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccessTokenRefreshSchedulerTests {
+
+	private AccessTokenRefreshScheduler scheduler = new AccessTokenRefreshScheduler(1);
+
+	@After
+	public void close() {
+		scheduler.destroy();
+	}
+
+	@Test
+	public void renewsBeforeExpiry() throws Exception {
+		scheduler.setFraction(0.5);
+		scheduler.setJitter(Duration.ZERO);
+		CountDownLatch renewed = new CountDownLatch(1);
+		DefaultOAuth2AccessToken token = token(2);
+		scheduler.schedule("key", token, () -> {
+			renewed.countDown();
+			return new DefaultOAuth2AccessToken("NEW");
+		});
+		assertThat(renewed.await(1500, TimeUnit.MILLISECONDS)).isTrue();
+		assertThat(token.isExpired()).isFalse();
+	}
+
+	@Test
+	public void schedulingSameTokenTwiceRenewsOnce() throws Exception {
+		scheduler.setFraction(0.1);
+		scheduler.setJitter(Duration.ZERO);
+		AtomicInteger renewals = new AtomicInteger();
+		DefaultOAuth2AccessToken token = token(2);
+		scheduler.schedule("key", token, () -> {
+			renewals.incrementAndGet();
+			return new DefaultOAuth2AccessToken("NO_EXPIRY");
+		});
+		scheduler.schedule("key", token, () -> {
+			renewals.incrementAndGet();
+			return new DefaultOAuth2AccessToken("NO_EXPIRY");
+		});
+		Thread.sleep(600);
+		assertThat(renewals.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void tokenWithoutExpiryIsIgnored() throws Exception {
+		AtomicInteger renewals = new AtomicInteger();
+		scheduler.schedule("key", new DefaultOAuth2AccessToken("FOO"), () -> {
+			renewals.incrementAndGet();
+			return null;
+		});
+		Thread.sleep(100);
+		assertThat(renewals.get()).isEqualTo(0);
+	}
+
+	private static DefaultOAuth2AccessToken token(int expiresInSeconds) {
+		DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken("FOO");
+		token.setExpiration(new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expiresInSeconds)));
+		return token;
+	}
+
+}
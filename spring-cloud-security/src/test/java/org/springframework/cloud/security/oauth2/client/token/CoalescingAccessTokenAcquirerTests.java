@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CoalescingAccessTokenAcquirerTests {
+
+	private CoalescingAccessTokenAcquirer acquirer = new CoalescingAccessTokenAcquirer();
+
+	private ExecutorService executor = Executors.newFixedThreadPool(8);
+
+	@After
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void concurrentCallersShareOneAcquisition() throws Exception {
+		AtomicInteger acquisitions = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		List<Future<OAuth2AccessToken>> results = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			results.add(executor.submit(() -> acquirer.acquire("key", () -> {
+				acquisitions.incrementAndGet();
+				await(release);
+				return new DefaultOAuth2AccessToken("FOO");
+			})));
+		}
+		Thread.sleep(200);
+		release.countDown();
+		OAuth2AccessToken first = results.get(0).get(5, TimeUnit.SECONDS);
+		for (Future<OAuth2AccessToken> result : results) {
+			assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(first);
+		}
+		assertThat(acquisitions.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void failureIsSharedAndNotRemembered() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		Future<OAuth2AccessToken> leader = executor.submit(() -> acquirer.acquire("key", () -> {
+			await(release);
+			throw new IllegalArgumentException("planned");
+		}));
+		Thread.sleep(100);
+		Future<OAuth2AccessToken> follower = executor
+				.submit(() -> acquirer.acquire("key", () -> new DefaultOAuth2AccessToken("UNUSED")));
+		Thread.sleep(100);
+		release.countDown();
+		assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+				.hasCauseInstanceOf(IllegalArgumentException.class);
+		assertThat(acquirer.acquire("key", () -> new DefaultOAuth2AccessToken("BAR")).getValue()).isEqualTo("BAR");
+	}
+
+	@Test
+	public void waitIsBounded() throws Exception {
+		acquirer.setTimeout(Duration.ofMillis(50));
+		CountDownLatch release = new CountDownLatch(1);
+		executor.submit(() -> acquirer.acquire("key", () -> {
+			await(release);
+			return new DefaultOAuth2AccessToken("FOO");
+		}));
+		Thread.sleep(100);
+		try {
+			assertThatThrownBy(() -> acquirer.acquire("key", () -> new DefaultOAuth2AccessToken("BAR")))
+					.isInstanceOf(IllegalStateException.class).hasMessageContaining("Timed out");
+		}
+		finally {
+			release.countDown();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.AuthenticationScheme;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryAccessTokenCacheTests {
+
+	private InMemoryAccessTokenCache cache = new InMemoryAccessTokenCache();
+
+	@Test
+	public void scopeOrderDoesNotMatter() {
+		DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken("FOO");
+		cache.put(resource("client", "read", "write"), token);
+		assertThat(cache.get(resource("client", "write", "read"))).isSameAs(token);
+		assertThat(cache.get(resource("other", "read", "write"))).isNull();
+	}
+
+	@Test
+	public void credentialsAreNotShared() {
+		DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken("FOO");
+		ClientCredentialsResourceDetails resource = resource("client", "read");
+		resource.setClientSecret("secret");
+		cache.put(resource, token);
+		ClientCredentialsResourceDetails rotated = resource("client", "read");
+		rotated.setClientSecret("rotated");
+		assertThat(cache.get(rotated)).isNull();
+		ClientCredentialsResourceDetails form = resource("client", "read");
+		form.setClientSecret("secret");
+		form.setClientAuthenticationScheme(AuthenticationScheme.form);
+		assertThat(cache.get(form)).isNull();
+		ClientCredentialsResourceDetails same = resource("client", "read");
+		same.setClientSecret("secret");
+		assertThat(cache.get(same)).isSameAs(token);
+	}
+
+	@Test
+	public void expiredTokenIsDropped() {
+		DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken("FOO");
+		token.setExpiration(new Date(System.currentTimeMillis() - 1000));
+		cache.put(resource("client", "read"), token);
+		assertThat(cache.get(resource("client", "read"))).isNull();
+		assertThat(cache.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void evict() {
+		cache.put(resource("client", "read"), new DefaultOAuth2AccessToken("FOO"));
+		cache.evict(resource("client", "read"));
+		assertThat(cache.get(resource("client", "read"))).isNull();
+	}
+
+	private ClientCredentialsResourceDetails resource(String clientId, String... scope) {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId(clientId);
+		resource.setAccessTokenUri("https://example.com/token");
+		resource.setScope(Arrays.asList(scope));
+		return resource;
+	}
+
+}
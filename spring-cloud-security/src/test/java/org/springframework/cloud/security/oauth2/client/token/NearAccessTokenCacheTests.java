@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.cloud.security.oauth2.client.token.RedisAccessTokenCacheTests.resource;
+import static org.springframework.cloud.security.oauth2.client.token.RedisAccessTokenCacheTests.token;
+
+public class NearAccessTokenCacheTests {
+
+	private AccessTokenCache sharedCache = mock(AccessTokenCache.class);
+
+	private NearAccessTokenCache cache = new NearAccessTokenCache(sharedCache);
+
+	@Test
+	public void sharedTokenKeptLocally() {
+		OAuth2AccessToken token = token("FOO", 60);
+		when(sharedCache.get(any(AccessTokenCacheKey.class))).thenReturn(token);
+
+		assertThat(cache.get(resource("client"))).isSameAs(token);
+		assertThat(cache.get(resource("client"))).isSameAs(token);
+		verify(sharedCache, times(1)).get(any(AccessTokenCacheKey.class));
+		assertThat(cache.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void localCopyExpires() {
+		cache.setTimeToLive(Duration.ZERO);
+		when(sharedCache.get(any(AccessTokenCacheKey.class))).thenReturn(token("FOO", 60));
+
+		cache.get(resource("client"));
+		cache.get(resource("client"));
+		verify(sharedCache, times(2)).get(any(AccessTokenCacheKey.class));
+	}
+
+	@Test
+	public void putStoresBoth() {
+		OAuth2AccessToken token = token("FOO", 60);
+		cache.put(resource("client"), token);
+
+		assertThat(cache.get(resource("client"))).isSameAs(token);
+		verify(sharedCache).put(any(AccessTokenCacheKey.class), any());
+		verify(sharedCache, times(0)).get(any(AccessTokenCacheKey.class));
+	}
+
+	@Test
+	public void sharedCacheFailuresIgnored() {
+		when(sharedCache.get(any(AccessTokenCacheKey.class))).thenThrow(new IllegalStateException("planned"));
+		doThrow(new IllegalStateException("planned")).when(sharedCache).put(any(AccessTokenCacheKey.class), any());
+
+		assertThat(cache.get(resource("client"))).isNull();
+		OAuth2AccessToken token = token("FOO", 60);
+		cache.put(resource("client"), token);
+		assertThat(cache.get(resource("client"))).isSameAs(token);
+	}
+
+	@Test
+	public void evictRemovesBoth() {
+		cache.put(resource("client"), token("FOO", 60));
+		cache.evict(resource("client"));
+
+		assertThat(cache.size()).isEqualTo(0);
+		verify(sharedCache).evict(any(AccessTokenCacheKey.class));
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RedisAccessTokenCacheTests {
+
+	private Map<String, String> redis = new ConcurrentHashMap<>();
+
+	@SuppressWarnings("unchecked")
+	private ValueOperations<String, String> values = mock(ValueOperations.class);
+
+	private StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+
+	private RedisAccessTokenCache cache = new RedisAccessTokenCache(redisTemplate);
+
+	@Before
+	public void init() {
+		// A map standing in for Redis (expiry is left to the tokens themselves)
+		when(redisTemplate.opsForValue()).thenReturn(values);
+		when(values.get(anyString())).thenAnswer((invocation) -> redis.get(invocation.<String>getArgument(0)));
+		doAnswer((invocation) -> redis.put(invocation.getArgument(0), invocation.getArgument(1))).when(values)
+				.set(anyString(), anyString());
+		doAnswer((invocation) -> redis.put(invocation.getArgument(0), invocation.getArgument(1))).when(values)
+				.set(anyString(), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS));
+		when(redisTemplate.delete(anyString()))
+				.thenAnswer((invocation) -> redis.remove(invocation.<String>getArgument(0)) != null);
+	}
+
+	@Test
+	public void sharedBetweenInstances() {
+		DefaultOAuth2AccessToken token = token("FOO", 60);
+		token.setScope(new LinkedHashSet<>(Arrays.asList("read", "write")));
+		cache.put(resource("client"), token);
+
+		OAuth2AccessToken cached = new RedisAccessTokenCache(redisTemplate).get(resource("client"));
+
+		assertThat(cached.getValue()).isEqualTo("FOO");
+		assertThat(cached.getTokenType()).isEqualTo(OAuth2AccessToken.BEARER_TYPE);
+		assertThat(cached.getExpiration()).isEqualTo(token.getExpiration());
+		assertThat(cached.getScope()).containsExactly("read", "write");
+		verify(values).set(anyString(), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void keyedByCredentials() {
+		cache.put(resource("client"), token("FOO", 60));
+
+		assertThat(cache.get(resource("other"))).isNull();
+		assertThat(redis.keySet()).allSatisfy((key) -> assertThat(key)
+				.startsWith(RedisAccessTokenCache.DEFAULT_KEY_PREFIX).doesNotContain("client"));
+	}
+
+	@Test
+	public void expiredTokenNotStored() {
+		cache.put(resource("client"), token("FOO", -1));
+
+		assertThat(redis).isEmpty();
+	}
+
+	@Test
+	public void tokenWithoutExpiry() {
+		cache.put(resource("client"), new DefaultOAuth2AccessToken("FOO"));
+
+		OAuth2AccessToken cached = cache.get(resource("client"));
+		assertThat(cached.getValue()).isEqualTo("FOO");
+		assertThat(cached.getExpiration()).isNull();
+		assertThat(cached.getScope()).isEmpty();
+	}
+
+	@Test
+	public void tokenWithoutTypeReadAsBearer() {
+		DefaultOAuth2AccessToken token = token("FOO", 60);
+		token.setTokenType(null);
+		cache.put(resource("client"), token);
+
+		assertThat(redis.values()).allSatisfy((value) -> assertThat(value).doesNotContain("null"));
+		assertThat(cache.get(resource("client")).getTokenType()).isEqualTo(OAuth2AccessToken.BEARER_TYPE);
+	}
+
+	@Test
+	public void evict() {
+		cache.put(resource("client"), token("FOO", 60));
+		cache.evict(resource("client"));
+
+		assertThat(cache.get(resource("client"))).isNull();
+	}
+
+	static ClientCredentialsResourceDetails resource(String clientId) {
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId(clientId);
+		resource.setAccessTokenUri("https://example.com/token");
+		return resource;
+	}
+
+	static DefaultOAuth2AccessToken token(String value, int expiresInSeconds) {
+		DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken(value);
+		token.setExpiration(new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expiresInSeconds)));
+		return token;
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.token;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StaleAccessTokenFallbackTests {
+
+	private StaleAccessTokenFallback fallback = new StaleAccessTokenFallback();
+
+	private AtomicInteger attempts = new AtomicInteger();
+
+	@After
+	public void close() {
+		fallback.destroy();
+	}
+
+	@Test
+	public void expiredTokenServedWhileRevalidating() throws Exception {
+		OAuth2AccessToken expired = token("OLD", -1);
+		fallback.acquire("key", () -> expired, this::fail);
+
+		OAuth2AccessToken renewed = token("NEW", 60);
+		CountDownLatch revalidated = new CountDownLatch(1);
+		assertThat(fallback.acquire("key", this::fail, () -> {
+			revalidated.countDown();
+			return renewed;
+		})).isSameAs(expired);
+		assertThat(revalidated.await(1, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(awaitToken("key", renewed)).isSameAs(renewed);
+		assertThat(attempts.get()).isEqualTo(0);
+	}
+
+	@Test
+	public void oneRevalidationPerKey() throws Exception {
+		fallback.acquire("key", () -> token("OLD", -1), this::fail);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger revalidations = new AtomicInteger();
+		Supplier<OAuth2AccessToken> revalidation = () -> {
+			revalidations.incrementAndGet();
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return token("NEW", 60);
+		};
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(fallback.acquire("key", this::fail, revalidation).getValue()).isEqualTo("OLD");
+		}
+		Thread.sleep(100);
+		release.countDown();
+
+		assertThat(revalidations.get()).isEqualTo(1);
+		assertThat(attempts.get()).isEqualTo(0);
+	}
+
+	@Test
+	public void expiredTokenNotUsedAfterGracePeriod() {
+		fallback.setGracePeriod(Duration.ofSeconds(1));
+		fallback.acquire("key", () -> token("OLD", -2), this::fail);
+
+		assertThatThrownBy(() -> fallback.acquire("key", this::fail, this::fail))
+				.isInstanceOf(IllegalStateException.class).hasMessage("planned");
+	}
+
+	@Test
+	public void validTokenReusedWithoutAcquisition() {
+		OAuth2AccessToken valid = token("FOO", 60);
+		fallback.acquire("key", () -> valid, this::fail);
+
+		assertThat(fallback.acquire("key", this::fail, this::fail)).isSameAs(valid);
+		assertThat(attempts.get()).isEqualTo(0);
+	}
+
+	@Test
+	public void circuitOpensAfterRepeatedFailures() {
+		fallback.setFailureThreshold(2);
+		fallback.setOpenDuration(Duration.ofMinutes(1));
+		for (int i = 0; i < 2; i++) {
+			assertThatThrownBy(() -> fallback.acquire("key", this::fail, this::fail))
+					.isInstanceOf(IllegalStateException.class).hasMessage("planned");
+		}
+
+		assertThatThrownBy(() -> fallback.acquire("key", this::fail, this::fail))
+				.isInstanceOf(IllegalStateException.class).hasMessageContaining("2 consecutive failures");
+		assertThat(attempts.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void openCircuitRevalidatesOncePerOpenDuration() throws Exception {
+		fallback.setFailureThreshold(1);
+		fallback.setOpenDuration(Duration.ofMinutes(1));
+		OAuth2AccessToken expired = token("OLD", -1);
+		fallback.acquire("key", () -> expired, this::fail);
+		assertThat(fallback.acquire("key", this::fail, this::fail)).isSameAs(expired);
+		for (int i = 0; i < 100 && attempts.get() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(attempts.get()).isEqualTo(1);
+
+		assertThat(fallback.acquire("key", this::fail, this::fail)).isSameAs(expired);
+		Thread.sleep(100);
+		assertThat(attempts.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void openCircuitFailsFastWithoutStaleToken() throws Exception {
+		fallback.setFailureThreshold(1);
+		fallback.setOpenDuration(Duration.ZERO);
+		assertThatThrownBy(() -> fallback.acquire("key", this::fail, this::fail))
+				.isInstanceOf(IllegalStateException.class).hasMessage("planned");
+
+		OAuth2AccessToken renewed = token("NEW", 60);
+		assertThatThrownBy(() -> fallback.acquire("key", this::fail, () -> renewed))
+				.isInstanceOf(IllegalStateException.class).hasMessageContaining("1 consecutive failures");
+
+		OAuth2AccessToken accessToken = null;
+		for (int i = 0; i < 100 && accessToken == null; i++) {
+			Thread.sleep(10);
+			try {
+				accessToken = fallback.acquire("key", this::fail, () -> renewed);
+			}
+			catch (IllegalStateException e) {
+				// Not revalidated yet
+			}
+		}
+		assertThat(accessToken).isSameAs(renewed);
+		assertThat(attempts.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void keysAreIndependent() {
+		fallback.setFailureThreshold(1);
+		assertThatThrownBy(() -> fallback.acquire("key", this::fail, this::fail))
+				.isInstanceOf(IllegalStateException.class);
+
+		OAuth2AccessToken other = token("OTHER", 60);
+		assertThat(fallback.acquire("other", () -> other, this::fail)).isSameAs(other);
+	}
+
+	private OAuth2AccessToken awaitToken(String key, OAuth2AccessToken expected) throws InterruptedException {
+		Supplier<OAuth2AccessToken> stale = () -> token("STALE", -1);
+		OAuth2AccessToken accessToken = null;
+		for (int i = 0; i < 100 && accessToken != expected; i++) {
+			Thread.sleep(10);
+			accessToken = fallback.acquire(key, this::fail, stale);
+		}
+		return accessToken;
+	}
+
+	private OAuth2AccessToken fail() {
+		attempts.incrementAndGet();
+		throw new IllegalStateException("planned");
+	}
+
+	private static OAuth2AccessToken token(String value, int expiresInSeconds) {
+		DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken(value);
+		token.setExpiration(new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expiresInSeconds)));
+		return token;
+	}
+
+}
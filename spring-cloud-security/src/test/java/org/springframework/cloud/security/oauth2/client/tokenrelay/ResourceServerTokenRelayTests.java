@@ -47,6 +47,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
@@ -58,7 +59,8 @@ import static org.springframework.test.web.client.response.MockRestResponseCreat
  */
 @RunWith(SpringRunner.class)
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
-		properties = { "security.oauth2.resource.jwt.keyValue=secret", "spring.cloud.gateway.enabled=false" })
+		properties = { "security.oauth2.resource.jwt.keyValue=secret", "spring.cloud.gateway.enabled=false",
+				"management.endpoints.web.base-path=/manage" })
 public class ResourceServerTokenRelayTests {
 
 	protected static final String TOKEN_VALID_UNTIL_2085 = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9."
@@ -97,6 +99,28 @@ public class ResourceServerTokenRelayTests {
 		verify(accessTokenContextRelay).copyToken();
 	}
 
+	@Test
+	public void noTokenRelayForExcludedPath() throws Exception {
+
+		HttpEntity<String> authorizationHeader = createAuthorizationHeader();
+		ResponseEntity<String> exchange = testRestTemplate.exchange("/webjars/no-relay", HttpMethod.GET,
+				authorizationHeader, String.class);
+
+		assertThat(exchange.getStatusCodeValue()).isEqualTo(HttpStatus.OK.value());
+		verify(accessTokenContextRelay, never()).copyToken();
+	}
+
+	@Test
+	public void noTokenRelayForActuator() throws Exception {
+
+		HttpEntity<String> authorizationHeader = createAuthorizationHeader();
+		ResponseEntity<String> exchange = testRestTemplate.exchange("/manage/info", HttpMethod.GET,
+				authorizationHeader, String.class);
+
+		assertThat(exchange.getStatusCodeValue()).isEqualTo(HttpStatus.OK.value());
+		verify(accessTokenContextRelay, never()).copyToken();
+	}
+
 	private HttpEntity<String> createAuthorizationHeader() {
 		HttpHeaders headers = new HttpHeaders();
 		headers.add("Authorization", AUTH_HEADER_TO_BE_RELAYED);
@@ -139,6 +163,11 @@ public class ResourceServerTokenRelayTests {
 
 		}
 
+		@GetMapping("/webjars/no-relay")
+		public String noRelay() {
+			return TEST_RESPONSE;
+		}
+
 	}
 
 }
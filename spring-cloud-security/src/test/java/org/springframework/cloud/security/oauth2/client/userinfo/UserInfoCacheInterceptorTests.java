@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.userinfo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class UserInfoCacheInterceptorTests {
+
+	private static final Instant NOW = Instant.parse("2020-06-01T12:00:00Z");
+
+	private UserInfoCacheInterceptor interceptor = new UserInfoCacheInterceptor(2, Duration.ofMinutes(1));
+
+	private RestTemplate restTemplate = new RestTemplate();
+
+	private MockRestServiceServer server;
+
+	@Before
+	public void setUp() {
+		restTemplate.setInterceptors(Collections.singletonList(interceptor));
+		server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+		at(NOW);
+	}
+
+	@Test
+	public void sameTokenServedFromCache() {
+		server.expect(ExpectedCount.once(), requestTo("https://example.com/user"))
+				.andExpect(header(HttpHeaders.AUTHORIZATION, "Bearer FOO"))
+				.andRespond(withSuccess("{\"id\":\"foo\"}", MediaType.APPLICATION_JSON));
+
+		assertThat(userInfo("FOO")).isEqualTo("{\"id\":\"foo\"}");
+		assertThat(userInfo("FOO")).isEqualTo("{\"id\":\"foo\"}");
+		server.verify();
+	}
+
+	@Test
+	public void differentTokensNotShared() {
+		server.expect(ExpectedCount.once(), requestTo("https://example.com/user"))
+				.andExpect(header(HttpHeaders.AUTHORIZATION, "Bearer FOO"))
+				.andRespond(withSuccess("{\"id\":\"foo\"}", MediaType.APPLICATION_JSON));
+		server.expect(ExpectedCount.once(), requestTo("https://example.com/user"))
+				.andExpect(header(HttpHeaders.AUTHORIZATION, "Bearer BAR"))
+				.andRespond(withSuccess("{\"id\":\"bar\"}", MediaType.APPLICATION_JSON));
+
+		assertThat(userInfo("FOO")).isEqualTo("{\"id\":\"foo\"}");
+		assertThat(userInfo("BAR")).isEqualTo("{\"id\":\"bar\"}");
+		server.verify();
+	}
+
+	@Test
+	public void errorsNotCached() {
+		server.expect(ExpectedCount.twice(), requestTo("https://example.com/user"))
+				.andRespond(withStatus(HttpStatus.UNAUTHORIZED));
+
+		assertThatThrownBy(() -> userInfo("FOO")).isInstanceOf(HttpClientErrorException.class);
+		assertThatThrownBy(() -> userInfo("FOO")).isInstanceOf(HttpClientErrorException.class);
+		server.verify();
+		assertThat(interceptor.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void expiredAfterTimeToLive() {
+		server.expect(ExpectedCount.twice(), requestTo("https://example.com/user"))
+				.andRespond(withSuccess("{\"id\":\"foo\"}", MediaType.APPLICATION_JSON));
+
+		userInfo("FOO");
+		at(NOW.plusSeconds(61));
+		userInfo("FOO");
+		server.verify();
+	}
+
+	@Test
+	public void expiryCappedByJwtExpiration() {
+		String jwt = jwt(NOW.plusSeconds(10));
+		server.expect(ExpectedCount.twice(), requestTo("https://example.com/user"))
+				.andRespond(withSuccess("{\"id\":\"foo\"}", MediaType.APPLICATION_JSON));
+
+		userInfo(jwt);
+		at(NOW.plusSeconds(5));
+		userInfo(jwt);
+		at(NOW.plusSeconds(10));
+		userInfo(jwt);
+		server.verify();
+	}
+
+	@Test
+	public void oldestEvictedWhenFull() {
+		server.expect(ExpectedCount.times(4), requestTo("https://example.com/user"))
+				.andRespond(withSuccess("{}", MediaType.APPLICATION_JSON));
+
+		userInfo("ONE");
+		userInfo("TWO");
+		userInfo("THREE");
+		assertThat(interceptor.size()).isEqualTo(2);
+		userInfo("THREE");
+		userInfo("ONE");
+		server.verify();
+	}
+
+	private String userInfo(String token) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setBearerAuth(token);
+		return restTemplate
+				.exchange("https://example.com/user", HttpMethod.GET, new HttpEntity<>(headers), String.class)
+				.getBody();
+	}
+
+	private void at(Instant instant) {
+		interceptor.setClock(Clock.fixed(instant, ZoneOffset.UTC));
+	}
+
+	private static String jwt(Instant expiry) {
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+				+ encoder.encodeToString(
+						("{\"exp\":" + expiry.getEpochSecond() + "}").getBytes(StandardCharsets.UTF_8))
+				+ ".signature";
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.client.userinfo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class UserInfoCoalescingInterceptorTests {
+
+	private UserInfoCoalescingInterceptor interceptor = new UserInfoCoalescingInterceptor(Duration.ofSeconds(5));
+
+	private ExecutorService executor = Executors.newFixedThreadPool(8);
+
+	private AtomicInteger calls = new AtomicInteger();
+
+	private CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void close() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void concurrentRequestsForSameTokenShareOneCall() throws Exception {
+		ClientHttpRequestExecution execution = (request, body) -> {
+			calls.incrementAndGet();
+			await(release);
+			return new MockClientHttpResponse("{\"id\":\"foo\"}".getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+		};
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			results.add(executor.submit(() -> body(interceptor.intercept(request("FOO"), new byte[0], execution))));
+		}
+		Thread.sleep(200);
+		release.countDown();
+		for (Future<String> result : results) {
+			assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("{\"id\":\"foo\"}");
+		}
+		assertThat(calls.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void differentTokensNotShared() throws Exception {
+		ClientHttpRequestExecution execution = (request, body) -> {
+			calls.incrementAndGet();
+			await(release);
+			return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+		};
+		Future<ClientHttpResponse> foo = executor
+				.submit(() -> interceptor.intercept(request("FOO"), new byte[0], execution));
+		Future<ClientHttpResponse> bar = executor
+				.submit(() -> interceptor.intercept(request("BAR"), new byte[0], execution));
+		Thread.sleep(100);
+		release.countDown();
+		foo.get(5, TimeUnit.SECONDS);
+		bar.get(5, TimeUnit.SECONDS);
+		assertThat(calls.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void failureSharedAndNotRemembered() throws Exception {
+		ClientHttpRequestExecution failing = (request, body) -> {
+			calls.incrementAndGet();
+			await(release);
+			throw new IOException("planned");
+		};
+		Future<ClientHttpResponse> leader = executor
+				.submit(() -> interceptor.intercept(request("FOO"), new byte[0], failing));
+		Thread.sleep(100);
+		Future<ClientHttpResponse> follower = executor
+				.submit(() -> interceptor.intercept(request("FOO"), new byte[0], failing));
+		Thread.sleep(100);
+		release.countDown();
+		assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IOException.class);
+		assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IOException.class);
+		assertThat(calls.get()).isEqualTo(1);
+
+		ClientHttpResponse response = interceptor.intercept(request("FOO"), new byte[0],
+				(request, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+		assertThat(response.getRawStatusCode()).isEqualTo(200);
+	}
+
+	private static MockClientHttpRequest request(String token) {
+		MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET,
+				URI.create("https://example.com/user"));
+		request.getHeaders().setBearerAuth(token);
+		return request;
+	}
+
+	private static String body(ClientHttpResponse response) throws IOException {
+		return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.gateway;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OAuth2TokenRelayGatewayFilterFactoryTests {
+
+	private AtomicReference<ServerWebExchange> filtered = new AtomicReference<>();
+
+	private StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+
+	private GatewayFilterChain chain = exchange -> {
+		filtered.set(exchange);
+		return Mono.empty();
+	};
+
+	@Test
+	public void relaysBearerToken() {
+		GatewayFilter filter = new OAuth2TokenRelayGatewayFilterFactory(clientManager())
+				.apply(new OAuth2TokenRelayGatewayFilterFactory.Config());
+		TestingAuthenticationToken authentication = new TestingAuthenticationToken("user", accessToken("INCOMING"));
+
+		filter.filter(exchange(), chain)
+				.contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)).block();
+
+		assertThat(filtered.get().getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+				.isEqualTo("Bearer INCOMING");
+	}
+
+	@Test
+	public void passesThroughWithoutAuthentication() {
+		GatewayFilter filter = new OAuth2TokenRelayGatewayFilterFactory(clientManager())
+				.apply(new OAuth2TokenRelayGatewayFilterFactory.Config());
+
+		filter.filter(exchange(), chain).block();
+
+		assertThat(filtered.get().getRequest().getHeaders().containsKey(HttpHeaders.AUTHORIZATION)).isFalse();
+	}
+
+	@Test
+	public void resolvesClientManagerWhenNeeded() {
+		OAuth2TokenRelayGatewayFilterFactory factory = new OAuth2TokenRelayGatewayFilterFactory(clientManager());
+		beanFactory.addBean("clientManager", clientManager("CLIENT"));
+		OAuth2TokenRelayGatewayFilterFactory.Config config = new OAuth2TokenRelayGatewayFilterFactory.Config();
+		config.setClientRegistrationId("inventory");
+
+		factory.apply(config).filter(exchange(), chain).block();
+
+		assertThat(filtered.get().getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+				.isEqualTo("Bearer CLIENT");
+	}
+
+	@Test
+	public void obtainsClientToken() {
+		beanFactory.addBean("clientManager", clientManager("CLIENT"));
+		OAuth2TokenRelayGatewayFilterFactory.Config config = new OAuth2TokenRelayGatewayFilterFactory.Config();
+		config.setClientRegistrationId("inventory");
+		GatewayFilter filter = new OAuth2TokenRelayGatewayFilterFactory(clientManager()).apply(config);
+
+		filter.filter(exchange(), chain).block();
+
+		assertThat(filtered.get().getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+				.isEqualTo("Bearer CLIENT");
+	}
+
+	private ObjectProvider<ReactiveOAuth2AuthorizedClientManager> clientManager() {
+		return beanFactory.getBeanProvider(ReactiveOAuth2AuthorizedClientManager.class);
+	}
+
+	private static ReactiveOAuth2AuthorizedClientManager clientManager(String token) {
+		ClientRegistration registration = ClientRegistration.withRegistrationId("inventory").clientId("gateway")
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.tokenUri("https://example.com/token").build();
+		ReactiveOAuth2AuthorizedClientManager clientManager = mock(ReactiveOAuth2AuthorizedClientManager.class);
+		when(clientManager.authorize(any()))
+				.thenReturn(Mono.just(new OAuth2AuthorizedClient(registration, "gateway", accessToken(token))));
+		return clientManager;
+	}
+
+	private static MockServerWebExchange exchange() {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("/orders").build());
+	}
+
+	private static OAuth2AccessToken accessToken(String value) {
+		return new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, value, Instant.now(),
+				Instant.now().plusSeconds(60));
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.resource;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class JwkSetCacheTests {
+
+	private static final String JWK_SET_URI = "https://example.com/jwks";
+
+	private RestTemplate restTemplate = new RestTemplate();
+
+	private MockRestServiceServer server;
+
+	private JwkSetCache cache;
+
+	private RSAKey first;
+
+	private RSAKey second;
+
+	@Before
+	public void setUp() throws Exception {
+		server = MockRestServiceServer.bindTo(restTemplate).build();
+		cache = new JwkSetCache(restTemplate, JWK_SET_URI, Duration.ofHours(1));
+		first = new RSAKeyGenerator(2048).keyID("first").generate();
+		second = new RSAKeyGenerator(2048).keyID("second").generate();
+	}
+
+	@After
+	public void close() {
+		cache.destroy();
+	}
+
+	@Test
+	public void downloadedOnceForKnownKeys() throws Exception {
+		server.expect(ExpectedCount.once(), requestTo(JWK_SET_URI)).andRespond(jwks(first));
+
+		assertThat(select("first")).hasSize(1);
+		assertThat(select("first")).hasSize(1);
+		server.verify();
+	}
+
+	@Test
+	public void unknownKeyTriggersDownload() throws Exception {
+		server.expect(requestTo(JWK_SET_URI)).andRespond(jwks(first));
+		server.expect(requestTo(JWK_SET_URI)).andRespond(jwks(first, second));
+		cache.setMinRefetchInterval(Duration.ZERO);
+
+		assertThat(select("first")).hasSize(1);
+		assertThat(select("second")).hasSize(1);
+		server.verify();
+	}
+
+	@Test
+	public void unknownKeyDownloadsRateLimited() throws Exception {
+		server.expect(ExpectedCount.once(), requestTo(JWK_SET_URI)).andRespond(jwks(first));
+
+		assertThat(select("first")).hasSize(1);
+		assertThat(select("unknown")).isEmpty();
+		assertThat(select("unknown")).isEmpty();
+		server.verify();
+	}
+
+	@Test
+	public void concurrentRequestsWaitForDownload() throws Exception {
+		CountDownLatch downloading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		server.expect(ExpectedCount.once(), requestTo(JWK_SET_URI)).andRespond(request -> {
+			downloading.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return jwks(first).createResponse(request);
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<List<JWK>> downloader = executor.submit(() -> select("first"));
+			assertThat(downloading.await(5, TimeUnit.SECONDS)).isTrue();
+			Future<List<JWK>> waiter = executor.submit(() -> select("first"));
+			release.countDown();
+
+			assertThat(downloader.get(5, TimeUnit.SECONDS)).hasSize(1);
+			assertThat(waiter.get(5, TimeUnit.SECONDS)).hasSize(1);
+			server.verify();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void failedDownload() {
+		server.expect(ExpectedCount.once(), requestTo(JWK_SET_URI))
+				.andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+
+		assertThatThrownBy(() -> select("first")).isInstanceOf(KeySourceException.class);
+		assertThatThrownBy(() -> select("first")).isInstanceOf(KeySourceException.class)
+				.hasMessageContaining("not available");
+		server.verify();
+	}
+
+	private List<JWK> select(String keyId) throws KeySourceException {
+		return cache.get(new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build()), null);
+	}
+
+	private static ResponseCreator jwks(JWK... keys) {
+		return withSuccess(new JWKSet(Arrays.asList(keys)).toPublicJWKSet().toString(),
+				MediaType.APPLICATION_JSON);
+	}
+
+}
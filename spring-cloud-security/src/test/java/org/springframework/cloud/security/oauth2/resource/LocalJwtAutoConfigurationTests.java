@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.resource;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoTokenServices;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.config.annotation.web.configuration.EnableResourceServer;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalJwtAutoConfigurationTests {
+
+	private ConfigurableApplicationContext context;
+
+	@After
+	public void close() {
+		if (this.context != null) {
+			this.context.close();
+		}
+	}
+
+	@Test
+	public void userInfoTokenServicesKept() {
+		this.context = run("spring.cloud.security.oauth2.resource.local-jwt.issuer=https://uaa.example.com",
+				"spring.cloud.security.oauth2.resource.local-jwt.audience=orders");
+		ResourceServerTokenServices services = this.context.getBean(ResourceServerTokenServices.class);
+		assertThat(services).isInstanceOf(LocalJwtTokenServices.class);
+		assertThat(((LocalJwtTokenServices) services).getDelegate())
+				.isSameAs(this.context.getBean(UserInfoTokenServices.class));
+	}
+
+	@Test
+	public void notValidatedLocallyWithoutIssuerAndAudience() {
+		this.context = run("spring.cloud.security.oauth2.resource.local-jwt.issuer=https://uaa.example.com");
+		assertThat(this.context.getBeansOfType(LocalJwtTokenServices.class)).isEmpty();
+		assertThat(this.context.getBean(ResourceServerTokenServices.class)).isInstanceOf(UserInfoTokenServices.class);
+	}
+
+	private ConfigurableApplicationContext run(String... properties) {
+		return new SpringApplicationBuilder(UserInfoResourceServerConfiguration.class)
+				.properties("spring.config.name=test", "server.port=0", "spring.cloud.gateway.enabled=false",
+						"security.oauth2.resource.userInfoUri:https://example.com/user",
+						"spring.cloud.security.oauth2.resource.local-jwt.enabled=true",
+						"spring.cloud.security.oauth2.resource.local-jwt.jwk-set-uri=https://example.com/jwks")
+				.properties(properties).run();
+	}
+
+	@EnableAutoConfiguration
+	@Configuration(proxyBeanMethods = false)
+	@EnableResourceServer
+	protected static class UserInfoResourceServerConfiguration {
+
+	}
+
+}
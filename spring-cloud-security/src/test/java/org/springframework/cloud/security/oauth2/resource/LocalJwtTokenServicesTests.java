@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.security.oauth2.resource;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class LocalJwtTokenServicesTests {
+
+	private static final String ISSUER = "https://uaa.example.com";
+
+	private static final String AUDIENCE = "orders";
+
+	private RSAKey key;
+
+	private ResourceServerTokenServices delegate = mock(ResourceServerTokenServices.class);
+
+	private LocalJwtTokenServices services;
+
+	@Before
+	public void setUp() throws Exception {
+		key = new RSAKeyGenerator(2048).keyID("key").generate();
+		services = new LocalJwtTokenServices(new ImmutableJWKSet<>(new JWKSet(key.toPublicJWK())), JWSAlgorithm.RS256,
+				ISSUER, AUDIENCE, delegate);
+	}
+
+	@Test
+	public void jwtValidatedLocally() throws Exception {
+		String token = jwt(key, new Date(System.currentTimeMillis() + 60000));
+
+		OAuth2Authentication authentication = services.loadAuthentication(token);
+
+		assertThat(authentication.getName()).isEqualTo("user");
+		assertThat(authentication.getOAuth2Request().getClientId()).isEqualTo("client");
+		assertThat(authentication.getOAuth2Request().getScope()).containsExactlyInAnyOrder("read", "write");
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void jwtReadLocally() throws Exception {
+		Date expiry = new Date(System.currentTimeMillis() + 60000);
+		String token = jwt(key, expiry);
+
+		OAuth2AccessToken accessToken = services.readAccessToken(token);
+
+		assertThat(accessToken.getValue()).isEqualTo(token);
+		assertThat(accessToken.getExpiration().getTime() / 1000).isEqualTo(expiry.getTime() / 1000);
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void opaqueTokenDelegated() {
+		OAuth2Authentication authentication = mock(OAuth2Authentication.class);
+		when(delegate.loadAuthentication("opaque")).thenReturn(authentication);
+
+		assertThat(services.loadAuthentication("opaque")).isSameAs(authentication);
+		verify(delegate).loadAuthentication("opaque");
+	}
+
+	@Test
+	public void expiredJwtRejected() throws Exception {
+		String token = jwt(key, new Date(System.currentTimeMillis() - 120000));
+
+		assertThatThrownBy(() -> services.loadAuthentication(token)).isInstanceOf(InvalidTokenException.class);
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void jwtSignedWithOtherKeyRejected() throws Exception {
+		String token = jwt(new RSAKeyGenerator(2048).keyID("key").generate(),
+				new Date(System.currentTimeMillis() + 60000));
+
+		assertThatThrownBy(() -> services.loadAuthentication(token)).isInstanceOf(InvalidTokenException.class);
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void jwtFromOtherIssuerRejected() throws Exception {
+		String token = jwt(key, "https://other.example.com", AUDIENCE, new Date(System.currentTimeMillis() + 60000));
+
+		assertThatThrownBy(() -> services.loadAuthentication(token)).isInstanceOf(InvalidTokenException.class);
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void jwtForOtherAudienceRejected() throws Exception {
+		String token = jwt(key, ISSUER, "inventory", new Date(System.currentTimeMillis() + 60000));
+
+		assertThatThrownBy(() -> services.loadAuthentication(token)).isInstanceOf(InvalidTokenException.class);
+		verifyNoInteractions(delegate);
+	}
+
+	@Test
+	public void jwtWithoutExpiryRejected() throws Exception {
+		String token = jwt(key, ISSUER, AUDIENCE, null);
+
+		assertThatThrownBy(() -> services.loadAuthentication(token)).isInstanceOf(InvalidTokenException.class);
+		verifyNoInteractions(delegate);
+	}
+
+	private static String jwt(RSAKey key, Date expiry) throws Exception {
+		return jwt(key, ISSUER, AUDIENCE, expiry);
+	}
+
+	private static String jwt(RSAKey key, String issuer, String audience, Date expiry) throws Exception {
+		JWTClaimsSet claims = new JWTClaimsSet.Builder().claim("user_name", "user").claim("client_id", "client")
+				.claim("scope", Arrays.asList("read", "write")).issuer(issuer).audience(audience)
+				.expirationTime(expiry).build();
+		SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+		jwt.sign(new RSASSASigner(key));
+		return jwt.serialize();
+	}
+
+}